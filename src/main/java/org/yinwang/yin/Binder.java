@@ -13,6 +13,98 @@ import java.util.Set;
 
 public class Binder {
 
+    public static void define(Node pattern, Value value, Frame env) {
+        if (pattern instanceof Name) {
+            Name name = (Name) pattern;
+            Value v = env.lookup(name.depth, name.slot);
+            if (v != null) {
+                Util.abort(pattern, "trying to redefine name: " + name.id);
+            } else {
+                env.put(name.depth, name.slot, value);
+            }
+        } else if (pattern instanceof RecordLiteral) {
+            if (value instanceof RecordType) {
+                Map<String, Node> elms1 = ((RecordLiteral) pattern).map;
+                Scope elms2 = ((RecordType) value).properties;
+                if (elms1.keySet().equals(elms2.keySet())) {
+                    for (String k1 : elms1.keySet()) {
+                        define(elms1.get(k1), elms2.lookupLocal(k1), env);
+                    }
+                } else {
+                    Util.abort(pattern, "define with records of different attributes: " +
+                            elms1.keySet() + " v.s. " + elms2.keySet());
+                }
+            } else {
+                Util.abort(pattern, "define with incompatible types: record and " + value);
+            }
+        } else if (pattern instanceof VectorLiteral) {
+            if (value instanceof Vector) {
+                List<Node> elms1 = ((VectorLiteral) pattern).elements;
+                Vector elms2 = (Vector) value;
+                if (elms1.size() == elms2.size()) {
+                    for (int i = 0; i < elms1.size(); i++) {
+                        define(elms1.get(i), elms2.get(i), env);
+                    }
+                } else {
+                    Util.abort(pattern,
+                            "define with vectors of different sizes: " + elms1.size() + " v.s. " + elms2.size());
+                }
+            } else {
+                Util.abort(pattern, "define with incompatible types: vector and " + value);
+            }
+        } else {
+            Util.abort(pattern, "unsupported pattern of define: " + pattern);
+        }
+    }
+
+
+    public static void assign(Node pattern, Value value, Frame env) {
+        if (pattern instanceof Name) {
+            Name name = (Name) pattern;
+            if (name.depth < 0 || name.interp(env) == null) {
+                Util.abort(pattern, "assigned name was not defined: " + name.id);
+            } else {
+                name.set(env, value);
+            }
+        } else if (pattern instanceof Subscript) {
+            ((Subscript) pattern).set(value, env);
+        } else if (pattern instanceof Attr) {
+            ((Attr) pattern).set(value, env);
+        } else if (pattern instanceof RecordLiteral) {
+            if (value instanceof RecordType) {
+                Map<String, Node> elms1 = ((RecordLiteral) pattern).map;
+                Scope elms2 = ((RecordType) value).properties;
+                if (elms1.keySet().equals(elms2.keySet())) {
+                    for (String k1 : elms1.keySet()) {
+                        assign(elms1.get(k1), elms2.lookupLocal(k1), env);
+                    }
+                } else {
+                    Util.abort(pattern, "assign with records of different attributes: " +
+                            elms1.keySet() + " v.s. " + elms2.keySet());
+                }
+            } else {
+                Util.abort(pattern, "assign with incompatible types: record and " + value);
+            }
+        } else if (pattern instanceof VectorLiteral) {
+            if (value instanceof Vector) {
+                List<Node> elms1 = ((VectorLiteral) pattern).elements;
+                Vector elms2 = (Vector) value;
+                if (elms1.size() == elms2.size()) {
+                    for (int i = 0; i < elms1.size(); i++) {
+                        assign(elms1.get(i), elms2.get(i), env);
+                    }
+                } else {
+                    Util.abort(pattern, "assign vectors of different sizes: " + elms1.size() + " v.s. " + elms2.size());
+                }
+            } else {
+                Util.abort(pattern, "assign incompatible types: vector and " + value);
+            }
+        } else {
+            Util.abort(pattern, "unsupported pattern of assign: " + pattern);
+        }
+    }
+
+
     public static void define(Node pattern, Value value, Scope env) {
         if (pattern instanceof Name) {
             String id = ((Name) pattern).id;
@@ -40,7 +132,7 @@ public class Binder {
         } else if (pattern instanceof VectorLiteral) {
             if (value instanceof Vector) {
                 List<Node> elms1 = ((VectorLiteral) pattern).elements;
-                List<Value> elms2 = ((Vector) value).values;
+                Vector elms2 = (Vector) value;
                 if (elms1.size() == elms2.size()) {
                     for (int i = 0; i < elms1.size(); i++) {
                         define(elms1.get(i), elms2.get(i), env);
@@ -68,10 +160,8 @@ public class Binder {
             } else {
                 d.putValue(id, value);
             }
-        } else if (pattern instanceof Subscript) {
-            ((Subscript) pattern).set(value, env);
-        } else if (pattern instanceof Attr) {
-            ((Attr) pattern).set(value, env);
+        } else if (pattern instanceof Subscript || pattern instanceof Attr) {
+            pattern.typecheck(env);
         } else if (pattern instanceof RecordLiteral) {
             if (value instanceof RecordType) {
                 Map<String, Node> elms1 = ((RecordLiteral) pattern).map;
@@ -90,7 +180,7 @@ public class Binder {
         } else if (pattern instanceof VectorLiteral) {
             if (value instanceof Vector) {
                 List<Node> elms1 = ((VectorLiteral) pattern).elements;
-                List<Value> elms2 = ((Vector) value).values;
+                Vector elms2 = (Vector) value;
                 if (elms1.size() == elms2.size()) {
                     for (int i = 0; i < elms1.size(); i++) {
                         assign(elms1.get(i), elms2.get(i), env);
@@ -107,6 +197,101 @@ public class Binder {
     }
 
 
+    /**
+     * Allocate slots for the names a statement defines in the current scope,
+     * so that they can be referred to before the definition (e.g. mutual
+     * recursion). Nested blocks and functions have their own scopes.
+     * This finds every definition, so a scope with no slots afterwards will
+     * never have any.
+     */
+    public static void declare(Node statement, LexicalScope s) {
+        if (statement instanceof Def) {
+            declarePattern(((Def) statement).pattern, s, statement.end);
+            declare(((Def) statement).value, s);
+        } else if (statement instanceof RecordDef) {
+            s.define(((RecordDef) statement).name.symbol, statement.end);
+        } else if (statement instanceof If) {
+            declare(((If) statement).test, s);
+            declare(((If) statement).then, s);
+            declare(((If) statement).orelse, s);
+        } else if (statement instanceof Assign) {
+            declare(((Assign) statement).value, s);
+        } else if (statement instanceof Call) {
+            declare(((Call) statement).op, s);
+            for (Node arg : ((Call) statement).args.positional) {
+                declare(arg, s);
+            }
+            for (Node arg : ((Call) statement).args.keywords.values()) {
+                declare(arg, s);
+            }
+        } else if (statement instanceof VectorLiteral) {
+            for (Node v : ((VectorLiteral) statement).elements) {
+                declare(v, s);
+            }
+        } else if (statement instanceof RecordLiteral) {
+            for (Node v : ((RecordLiteral) statement).map.values()) {
+                declare(v, s);
+            }
+        } else if (statement instanceof Subscript) {
+            declare(((Subscript) statement).value, s);
+            declare(((Subscript) statement).index, s);
+        } else if (statement instanceof Attr) {
+            declare(((Attr) statement).value, s);
+        }
+    }
+
+
+    public static void declarePattern(Node pattern, LexicalScope s, int end) {
+        if (pattern instanceof Name) {
+            s.define(((Name) pattern).symbol, end);
+        } else if (pattern instanceof RecordLiteral) {
+            for (Node v : ((RecordLiteral) pattern).map.values()) {
+                declarePattern(v, s, end);
+            }
+        } else if (pattern instanceof VectorLiteral) {
+            for (Node v : ((VectorLiteral) pattern).elements) {
+                declarePattern(v, s, end);
+            }
+        }
+    }
+
+
+    public static void resolveDefine(Node pattern, LexicalScope s) {
+        if (pattern instanceof Name) {
+            Name name = (Name) pattern;
+            name.depth = 0;
+            name.slot = s.define(name.symbol);
+        } else if (pattern instanceof RecordLiteral) {
+            for (Node v : ((RecordLiteral) pattern).map.values()) {
+                resolveDefine(v, s);
+            }
+        } else if (pattern instanceof VectorLiteral) {
+            for (Node v : ((VectorLiteral) pattern).elements) {
+                resolveDefine(v, s);
+            }
+        }
+    }
+
+
+    public static void resolveAssign(Node pattern, LexicalScope s) {
+        if (pattern instanceof RecordLiteral) {
+            for (Node v : ((RecordLiteral) pattern).map.values()) {
+                resolveAssign(v, s);
+            }
+        } else if (pattern instanceof VectorLiteral) {
+            for (Node v : ((VectorLiteral) pattern).elements) {
+                resolveAssign(v, s);
+            }
+        } else {
+            // names, subscripts and attributes
+            pattern.resolve(s);
+            if (pattern instanceof Name && ((Name) pattern).depth >= 0) {
+                s.getAncestor(((Name) pattern).depth).markAssigned(((Name) pattern).symbol);
+            }
+        }
+    }
+
+
     public static void checkDup(Node pattern) {
         checkDup1(pattern, new HashSet<String>());
     }
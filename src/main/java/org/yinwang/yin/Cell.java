@@ -0,0 +1,20 @@
+package org.yinwang.yin;
+
+
+import org.yinwang.yin.value.Value;
+
+
+/**
+ * Mutable box for a variable which is captured by a closure and can change
+ * afterwards. The frame slot and the closures share the cell.
+ */
+public final class Cell {
+
+    public Value value;
+
+
+    public Cell(Value value) {
+        this.value = value;
+    }
+
+}
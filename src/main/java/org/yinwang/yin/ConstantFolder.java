@@ -0,0 +1,259 @@
+package org.yinwang.yin;
+
+
+import org.yinwang.yin.ast.*;
+import org.yinwang.yin.value.*;
+
+import java.util.*;
+
+
+/**
+ * Fold calls to pure primitives on constant arguments, after resolve. A
+ * primitive can only be folded if its name refers to the initial frame and
+ * is never assigned by set! in the program, so the value it has now is the
+ * value it will have when the call runs.
+ */
+public class ConstantFolder {
+
+    static final Set<String> PURE = new HashSet<>(Arrays.asList(
+            "+", "-", "*", "/", "<", "<=", ">", ">=", "=", "and", "or", "not"));
+
+    Frame root;
+    Set<String> assigned = new HashSet<>();
+
+
+    ConstantFolder(Frame root) {
+        this.root = root;
+    }
+
+
+    /**
+     * @param root the frame the program runs in, as given to resolve
+     */
+    public static void fold(Node program, Frame root) {
+        ConstantFolder folder = new ConstantFolder(root);
+        folder.findAssigned(program, 0);
+        folder.fold(program, 0);
+    }
+
+
+    /**
+     * Record the names of the initial frame which are targets of set!.
+     * level is the number of scopes between node and the initial one.
+     */
+    void findAssigned(Node node, int level) {
+        if (node instanceof Assign) {
+            findAssignedPattern(((Assign) node).pattern, level);
+        }
+        for (Node child : children(node)) {
+            findAssigned(child, childLevel(node, child, level));
+        }
+    }
+
+
+    void findAssignedPattern(Node pattern, int level) {
+        if (pattern instanceof Name) {
+            if (((Name) pattern).depth == level) {
+                assigned.add(((Name) pattern).id);
+            }
+        } else if (pattern instanceof VectorLiteral) {
+            for (Node e : ((VectorLiteral) pattern).elements) {
+                findAssignedPattern(e, level);
+            }
+        } else if (pattern instanceof RecordLiteral) {
+            for (Node e : ((RecordLiteral) pattern).map.values()) {
+                findAssignedPattern(e, level);
+            }
+        }
+    }
+
+
+    /**
+     * Fold the calls in node, and return its value if it is a constant
+     */
+    Value fold(Node node, int level) {
+        if (node instanceof IntNum) {
+            return ((IntNum) node).literal;
+        } else if (node instanceof BigInt) {
+            return ((BigInt) node).literal;
+        } else if (node instanceof FloatNum) {
+            return ((FloatNum) node).literal;
+        } else if (node instanceof Str) {
+            return ((Str) node).literal;
+        } else if (node instanceof Name) {
+            Value v = lookupRoot((Name) node, level);
+            return v instanceof BoolValue ? v : null;
+        } else if (node instanceof Call) {
+            return foldCall((Call) node, level);
+        } else {
+            for (Node child : children(node)) {
+                fold(child, childLevel(node, child, level));
+            }
+            if (node instanceof Fun && ((Fun) node).propertyForm != null) {
+                foldProperties((Fun) node, level);
+            }
+            return null;
+        }
+    }
+
+
+    /**
+     * Evaluate the property form of fun now if all of it is constant, so
+     * that its closures can share one properties scope.
+     */
+    void foldProperties(Fun fun, int level) {
+        Scope evaled = new Scope();
+        for (String field : fun.propertyForm.keySet()) {
+            for (Map.Entry<String, Object> e : fun.propertyForm.lookupAllProps(field).entrySet()) {
+                Value v = constantValue((Node) e.getValue(), level);
+                if (v == null) {
+                    return;
+                }
+                evaled.put(field, e.getKey(), v);
+            }
+        }
+        fun.constantProperties = evaled;
+        fun.constantDefaults = Closure.defaults(fun, evaled);
+    }
+
+
+    /**
+     * Value of an already folded node if it is known now, like a literal or
+     * a type name of the initial frame
+     */
+    Value constantValue(Node node, int level) {
+        if (node instanceof IntNum) {
+            return ((IntNum) node).literal;
+        } else if (node instanceof BigInt) {
+            return ((BigInt) node).literal;
+        } else if (node instanceof FloatNum) {
+            return ((FloatNum) node).literal;
+        } else if (node instanceof Str) {
+            return ((Str) node).literal;
+        } else if (node instanceof Call) {
+            return ((Call) node).constant;
+        } else if (node instanceof Name) {
+            return lookupRoot((Name) node, level);
+        } else {
+            return null;
+        }
+    }
+
+
+    Value foldCall(Call call, int level) {
+        fold(call.op, level);
+        List<Value> args = new ArrayList<>();
+        for (Node arg : call.args.positional) {
+            args.add(fold(arg, level));
+        }
+        for (Node arg : call.args.keywords.values()) {
+            fold(arg, level);
+        }
+
+        Value op = call.op instanceof Name ? lookupRoot((Name) call.op, level) : null;
+        if (op instanceof PrimFun && PURE.contains(((PrimFun) op).name) && call.args.keywords.isEmpty()
+                && args.size() == ((PrimFun) op).arity && canApply((PrimFun) op, args))
+        {
+            call.constant = ((PrimFun) op).apply(args, call);
+            return call.constant;
+        } else {
+            return null;
+        }
+    }
+
+
+    /**
+     * Whether applying prim to args succeeds. Folding must never report an
+     * error which the program would only hit at runtime, if at all.
+     */
+    boolean canApply(PrimFun prim, List<Value> args) {
+        for (Value arg : args) {
+            if (prim.name.equals("and") || prim.name.equals("or") || prim.name.equals("not")) {
+                if (!(arg instanceof BoolValue)) {
+                    return false;
+                }
+            } else if (!(arg instanceof IntValue || arg instanceof BigIntValue || arg instanceof FloatValue)) {
+                return false;
+            }
+        }
+        if (prim.name.equals("/") && args.get(1) instanceof IntValue) {
+            return ((IntValue) args.get(1)).value != 0;
+        }
+        return true;
+    }
+
+
+    // the current value of name, if it refers to the initial frame and is never assigned
+    Value lookupRoot(Name name, int level) {
+        if (name.depth == level && !assigned.contains(name.id)) {
+            return Frame.deref(root.slots[name.slot]);
+        } else {
+            return null;
+        }
+    }
+
+
+    /**
+     * Subexpressions of node, including property forms
+     */
+    static List<Node> children(Node node) {
+        List<Node> children = new ArrayList<>();
+        if (node instanceof Block) {
+            children.addAll(((Block) node).statements);
+        } else if (node instanceof If) {
+            children.add(((If) node).test);
+            children.add(((If) node).then);
+            children.add(((If) node).orelse);
+        } else if (node instanceof Def) {
+            children.add(((Def) node).value);
+        } else if (node instanceof Assign) {
+            children.add(((Assign) node).value);
+        } else if (node instanceof Call) {
+            children.add(((Call) node).op);
+            children.addAll(((Call) node).args.positional);
+            children.addAll(((Call) node).args.keywords.values());
+        } else if (node instanceof Fun) {
+            addProperties(((Fun) node).propertyForm, children);
+            children.add(((Fun) node).body);
+        } else if (node instanceof RecordDef) {
+            addProperties(((RecordDef) node).propertyForm, children);
+        } else if (node instanceof RecordLiteral) {
+            children.addAll(((RecordLiteral) node).map.values());
+        } else if (node instanceof VectorLiteral) {
+            children.addAll(((VectorLiteral) node).elements);
+        } else if (node instanceof Subscript) {
+            children.add(((Subscript) node).value);
+            children.add(((Subscript) node).index);
+        } else if (node instanceof Attr) {
+            children.add(((Attr) node).value);
+        }
+        return children;
+    }
+
+
+    static void addProperties(Scope propertyForm, List<Node> children) {
+        if (propertyForm != null) {
+            for (String field : propertyForm.keySet()) {
+                for (Object v : propertyForm.lookupAllProps(field).values()) {
+                    children.add((Node) v);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Scope level of child. Blocks which define something open a scope,
+     * and function bodies are inside the scope of the parameters.
+     */
+    static int childLevel(Node parent, Node child, int level) {
+        if (parent instanceof Block && ((Block) parent).scoped) {
+            return level + 1;
+        } else if (parent instanceof Fun && child == ((Fun) parent).body) {
+            return level + 1;
+        } else {
+            return level;
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package org.yinwang.yin;
+
+
+import org.yinwang.yin.value.Closure;
+import org.yinwang.yin.value.Value;
+
+
+/**
+ * Runtime activation record. Slots are laid out by LexicalScope at resolve
+ * time, so a frame is just a fixed-size array with a parent pointer.
+ * Scope is only used for type checking and property forms.
+ *
+ * The frame of a function call has no parent. Variables of enclosing
+ * functions are reached through captured, the free variables of the
+ * closure, which is shared by all frames of the call. A slot or captured
+ * entry holds a Cell instead of a value if the variable can change after
+ * it is captured.
+ */
+public class Frame {
+
+    public Object[] slots;
+    public Frame parent;
+    public Object[] captured;
+
+
+    public Frame(Frame parent, int size) {
+        this.parent = parent;
+        this.slots = new Object[size];
+        if (parent != null) {
+            this.captured = parent.captured;
+        }
+    }
+
+
+    /**
+     * Frame for a call to closure
+     */
+    public Frame(Closure closure) {
+        this.slots = new Object[closure.fun.frameSize];
+        this.captured = closure.captured;
+    }
+
+
+    /**
+     * Build the frame of a scope's values, with the same slot layout as
+     * LexicalScope(Scope), used for the initial frame of builtins.
+     */
+    public Frame(Scope scope) {
+        this(null, scope.keySet().size());
+        int i = 0;
+        for (String name : scope.keySet()) {
+            slots[i++] = scope.lookupLocal(name);
+        }
+    }
+
+
+    public Frame getAncestor(int depth) {
+        Frame f = this;
+        for (int i = 0; i < depth; i++) {
+            f = f.parent;
+        }
+        return f;
+    }
+
+
+    public Value lookup(int depth, int slot) {
+        return deref(getAncestor(depth).slots[slot]);
+    }
+
+
+    public void put(int depth, int slot, Value value) {
+        put(getAncestor(depth).slots, slot, value);
+    }
+
+
+    /**
+     * Put cells into the given slots, keeping the values already there
+     */
+    public void box(int[] cellSlots) {
+        for (int slot : cellSlots) {
+            if (!(slots[slot] instanceof Cell)) {
+                slots[slot] = new Cell((Value) slots[slot]);
+            }
+        }
+    }
+
+
+    public static Value deref(Object v) {
+        if (v instanceof Cell) {
+            return ((Cell) v).value;
+        } else {
+            return (Value) v;
+        }
+    }
+
+
+    public static void put(Object[] slots, int index, Value value) {
+        if (slots[index] instanceof Cell) {
+            ((Cell) slots[index]).value = value;
+        } else {
+            slots[index] = value;
+        }
+    }
+
+}
@@ -6,30 +6,56 @@ import org.yinwang.yin.parser.ParserException;
 import org.yinwang.yin.parser.PreParser;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 /**
  * Created by C.Zhang on 6/28/14.
  */
 public class InteractiveInterpreter {
     Scope persistentScope = Scope.buildInitScope();
+    Frame persistentFrame = new Frame(persistentScope);
 
-    Node parseString(StringBuffer buffer) throws ParserException {
-        PreParser preparser = new PreParser(buffer);
-        Node prenode = preparser.parse();
-        return Parser.parseNode(prenode);
+    // keeps the tokens and open delimiters of the input so far, so each
+    // line is only read once
+    PreParser preparser;
+
+    /**
+     * The forms which the input so far completes, resolved, or null if
+     * their delimiters don't balance yet
+     */
+    Node parseForms() throws ParserException {
+        List<Node> forms = new ArrayList<>();
+        for (Node form = preparser.nextForm(); form != null; form = preparser.nextForm()) {
+            forms.add(form);
+        }
+        if (forms.isEmpty()) {
+            return null;
+        }
+        Node program = Parser.parseNode(preparser.program(forms));
+        Interpreter.resolve(program, persistentScope, persistentFrame);
+        return program;
     }
 
     boolean isTolerable(ParserException e) {
-        if (e.getMessage().equals("runaway string")) {
-            return true;
-        } else if (e.getMessage().startsWith("unclosed delimeter till end of file")) {
-            return true;
-        }
-        return false;
+        return e.getMessage().equals("runaway string");
     }
     void runREPLLoop() throws IOException {
-        StringBuffer buffer = new StringBuffer();
+        // whole lines of UTF-8 from stdin, and stdout buffered until the
+        // REPL waits for input. Print writes to System.out, so it goes
+        // through the same buffer and stays in order.
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        final PrintStream out = new PrintStream(
+                new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false, "UTF-8");
+        System.setOut(out);
+        // Util.abort exits without returning here
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                out.flush();
+            }
+        });
 
-        int c ;
+        String line;
         int state = 0; // Ready
 
         // the Run-Eval-Print Loop
@@ -39,51 +65,56 @@ public class InteractiveInterpreter {
             }
             switch (state) {
                 case 0:
-                    System.out.print("(seq ");
-                    buffer.setLength(0);
-                    buffer.append("(seq ");
+                    out.print("(seq ");
+                    preparser = new PreParser();
+                    preparser.append("(seq ");
                     break;
                 case 1:
-                    System.out.print(".... ");
+                    out.print(".... ");
                     break;
 
             }
 
+            // show what we have before blocking, but not between lines
+            // which are already there, as when a script is piped in
+            if (!in.ready()) {
+                out.flush();
+            }
+
             // placeholder
             state = -1;
             // stop when ctrl-d is pressed
-            while ((c = System.in.read()) != -1) {
-
-                char character = (char)c;
-                buffer.append(character);
-                // newline
-                if (c == '\n') {
-                    Node program;
-                    String result = "";
-                    try {
-                        program = parseString(buffer);
+            if ((line = in.readLine()) != null) {
+                Node program;
+                String result = "";
+                try {
+                    preparser.append(line + "\n");
+                    program = parseForms();
 
+                    if (program == null) {
+                        state = 1;
+                    } else {
                         try {
-                            result = program.interp(persistentScope).toString();
+                            result = program.interp(persistentFrame).toString();
                         } catch (Exception e){
                             result = e.getMessage();
                         } finally {
-                            System.out.println(result);
+                            out.println(result);
                             state = 0;
                         }
+                    }
 
-                    } catch (ParserException pe) {
-                        if (isTolerable(pe)) {
-                            state = 1;
-                        } else {
-                            System.out.println(pe.getMessage());
-                            state = 0;
-                        }
+                } catch (ParserException pe) {
+                    if (isTolerable(pe)) {
+                        state = 1;
+                    } else {
+                        out.println(pe.getMessage());
+                        state = 0;
                     }
-                    break;
                 }
             }
         }
+        out.flush();
     }
     public static void main(String[] args) throws IOException {
         InteractiveInterpreter interp = new InteractiveInterpreter();
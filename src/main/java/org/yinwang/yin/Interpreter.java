@@ -4,7 +4,12 @@ package org.yinwang.yin;
 import org.yinwang.yin.ast.Node;
 import org.yinwang.yin.parser.Parser;
 import org.yinwang.yin.parser.ParserException;
+import org.yinwang.yin.jit.Jit;
 import org.yinwang.yin.value.Value;
+import org.yinwang.yin.vm.Code;
+import org.yinwang.yin.vm.Compiler;
+import org.yinwang.yin.vm.VM;
+import org.yinwang.yin.vm.VMFrame;
 
 public class Interpreter {
 
@@ -17,20 +22,77 @@ public class Interpreter {
 
 
     public Value interp(String file) {
-        Node program;
+        Node program = parse(file);
+        Scope init = Scope.buildInitScope();
+        Frame root = new Frame(init);
+        resolve(program, init, root);
+        return program.interp(root);
+    }
+
+
+    /**
+     * Compile the program to register code and run it on the VM
+     */
+    public Value interpVM(String file) {
+        Node program = parse(file);
+        Scope init = Scope.buildInitScope();
+        program.resolve(new LexicalScope(init));
+        ConstantFolder.fold(program, new Frame(init));
+        Code code = Compiler.compile(program, init);
+        return VM.run(code, new VMFrame(init));
+    }
+
+
+    /**
+     * Compile the program and its functions to JVM classes and run them
+     */
+    public Value interpJIT(String file) {
+        Node program = parse(file);
+        Scope init = Scope.buildInitScope();
+        Frame root = new Frame(init);
+        resolve(program, init, root);
+        return Jit.compileProgram(program).run(root);
+    }
+
+
+    /**
+     * Resolve and fold a program which runs in root, the frame of init
+     */
+    public static void resolve(Node program, Scope init, Frame root) {
+        LexicalScope global = new LexicalScope(init);
+        program.resolve(global);
+        root.box(global.cellSlots());
+        ConstantFolder.fold(program, root);
+    }
+
+
+    Node parse(String file) {
         try {
-            program = Parser.parse(file);
+            return Parser.parse(file);
         } catch (ParserException e) {
             Util.abort("parsing error: " + e);
             return null;
         }
-        return program.interp(Scope.buildInitScope());
     }
 
 
     public static void main(String[] args) {
-        Interpreter i = new Interpreter(args[0]);
-        Util.msg(i.interp(args[0]).toString());
+        boolean vm = false;
+        boolean jit = false;
+        String file = null;
+        for (String arg : args) {
+            if (arg.equals("-vm")) {
+                vm = true;
+            } else if (arg.equals("-jit")) {
+                jit = true;
+            } else {
+                file = arg;
+            }
+        }
+
+        Interpreter i = new Interpreter(file);
+        Value result = vm ? i.interpVM(file) : jit ? i.interpJIT(file) : i.interp(file);
+        Util.msg(result.toString());
     }
 
 }
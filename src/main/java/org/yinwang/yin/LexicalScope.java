@@ -0,0 +1,148 @@
+package org.yinwang.yin;
+
+
+import org.yinwang.yin.ast.Fun;
+
+import java.util.*;
+
+
+/**
+ * Compile-time mirror of the runtime scope chain. Every name defined in a
+ * scope gets a slot index, so that a Name can be resolved once into a
+ * (depth, slot) coordinate instead of being looked up by string at runtime.
+ * Names are interned Symbols, so the maps compare them by identity.
+ */
+public class LexicalScope {
+
+    public Map<Symbol, Integer> slots = new IdentityHashMap<>();
+    public LexicalScope parent;
+    public Fun fun;         // the function if this is the scope of its parameters
+
+    // what closure conversion needs to know about the names defined here
+    Map<Symbol, Integer> definedEnd = new IdentityHashMap<>();
+    Set<Symbol> captured = Collections.newSetFromMap(new IdentityHashMap<Symbol, Boolean>());
+    Set<Symbol> capturedEarly = Collections.newSetFromMap(new IdentityHashMap<Symbol, Boolean>());
+    Set<Symbol> assigned = Collections.newSetFromMap(new IdentityHashMap<Symbol, Boolean>());
+
+
+    public LexicalScope(LexicalScope parent) {
+        this.parent = parent;
+    }
+
+
+    /**
+     * Build a lexical scope with the same slot layout as a runtime scope,
+     * used for the initial scope of builtins.
+     */
+    public LexicalScope(Scope runtime) {
+        this.parent = null;
+        for (String name : runtime.keySet()) {
+            define(Symbol.intern(name));
+        }
+    }
+
+
+    /**
+     * Allocate a slot for name in this scope, or return the existing one.
+     */
+    public int define(Symbol name) {
+        Integer slot = slots.get(name);
+        if (slot != null) {
+            return slot;
+        } else {
+            int newSlot = slots.size();
+            slots.put(name, newSlot);
+            return newSlot;
+        }
+    }
+
+
+    /**
+     * Allocate a slot for a name defined by a statement ending at offset
+     * end. Closures created before that may see the name before it has a
+     * value.
+     */
+    public int define(Symbol name, int end) {
+        definedEnd.put(name, end);
+        return define(name);
+    }
+
+
+    public void markAssigned(Symbol name) {
+        assigned.add(name);
+    }
+
+
+    /**
+     * Record that name is captured by a function starting at offset start
+     */
+    public void markCaptured(Symbol name, int start) {
+        captured.add(name);
+        Integer end = definedEnd.get(name);
+        if (end != null && start < end) {
+            capturedEarly.add(name);
+        }
+    }
+
+
+    /**
+     * Slots which must hold a Cell, because a closure captures the variable
+     * and it can change afterwards, either by set! or by a later define.
+     * Only complete after everything in this scope is resolved.
+     */
+    public int[] cellSlots() {
+        List<Integer> cells = new ArrayList<>();
+        for (Symbol name : captured) {
+            if (assigned.contains(name) || capturedEarly.contains(name)) {
+                cells.add(slots.get(name));
+            }
+        }
+        int[] result = new int[cells.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = cells.get(i);
+        }
+        return result;
+    }
+
+
+    public Integer lookupLocal(Symbol name) {
+        return slots.get(name);
+    }
+
+
+    /**
+     * Find the number of scopes between this one and the scope defining name.
+     *
+     * @return the depth, or -1 if name is unbound
+     */
+    public int lookupDepth(Symbol name) {
+        int depth = 0;
+        for (LexicalScope s = this; s != null; s = s.parent) {
+            if (s.slots.containsKey(name)) {
+                return depth;
+            }
+            depth++;
+        }
+        return -1;
+    }
+
+
+    public LexicalScope getAncestor(int depth) {
+        LexicalScope s = this;
+        for (int i = 0; i < depth; i++) {
+            s = s.parent;
+        }
+        return s;
+    }
+
+
+    public int size() {
+        return slots.size();
+    }
+
+
+    public String toString() {
+        return slots.keySet().toString();
+    }
+
+}
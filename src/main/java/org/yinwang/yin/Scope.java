@@ -1,7 +1,6 @@
 package org.yinwang.yin;
 
 
-import org.yinwang.yin.value.BoolValue;
 import org.yinwang.yin.value.Type;
 import org.yinwang.yin.value.Value;
 import org.yinwang.yin.value.primitives.*;
@@ -156,8 +155,17 @@ public class Scope {
 
         init.putValue("print", new Print());
 
-        init.putValue("true", new BoolValue(true));
-        init.putValue("false", new BoolValue(false));
+        init.putValue("pvector", new PVector());
+        init.putValue("nth", new Nth());
+        init.putValue("count", new Count());
+        init.putValue("assoc", new Assoc());
+        init.putValue("conj", new Conj());
+        init.putValue("pop", new Pop());
+        init.putValue("slice", new Slice());
+        init.putValue("concat", new Concat());
+
+        init.putValue("true", Value.TRUE);
+        init.putValue("false", Value.FALSE);
 
         init.putValue("Int", Type.INT);
         init.putValue("Bool", Type.BOOL);
@@ -0,0 +1,113 @@
+package org.yinwang.yin;
+
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * An interned identifier. There is one Symbol for each distinct name, so
+ * symbols are compared by identity, and each has a dense id counting from
+ * 0, which is also its hash. Maps keyed by symbols, like the shapes of
+ * records and the keyword arguments of calls, neither hash nor compare
+ * strings.
+ *
+ * The lexer interns names straight from its text, so a name which has
+ * been seen before costs no new String. The table is concurrent, because
+ * the ranges of a big file are lexed in parallel.
+ *
+ * Symbols are never freed: the table holds every name the process has
+ * read, for as long as it runs.
+ */
+public final class Symbol {
+
+    public final String name;
+    public final int id;
+
+    static final ConcurrentHashMap<Key, Symbol> table = new ConcurrentHashMap<>(1024);
+    static final AtomicInteger count = new AtomicInteger();
+
+
+    private Symbol(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+
+    public static Symbol intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+
+    /**
+     * The symbol of the chars of text from start to end
+     */
+    public static Symbol intern(CharSequence text, int start, int end) {
+        Symbol s = table.get(new Key(text, start, end));
+        if (s != null) {
+            return s;
+        }
+        String name = text.subSequence(start, end).toString();
+        return table.computeIfAbsent(new Key(name, 0, name.length()), k -> new Symbol(name, count.getAndIncrement()));
+    }
+
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+
+    public String toString() {
+        return name;
+    }
+
+
+    /**
+     * Key of the table: the chars of text from start to end. Lookups use a
+     * range of the source text, and the stored keys the name of the symbol.
+     */
+    static final class Key {
+        final CharSequence text;
+        final int start;
+        final int end;
+        final int hash;
+
+
+        Key(CharSequence text, int start, int end) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            int h = 0;
+            for (int i = start; i < end; i++) {
+                h = 31 * h + text.charAt(i);
+            }
+            this.hash = h;
+        }
+
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            if (hash != k.hash || end - start != k.end - k.start) {
+                return false;
+            }
+            for (int i = 0; i < end - start; i++) {
+                if (text.charAt(start + i) != k.text.charAt(k.start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
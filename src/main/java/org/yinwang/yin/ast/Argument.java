@@ -1,6 +1,7 @@
 package org.yinwang.yin.ast;
 
 
+import org.yinwang.yin.Symbol;
 import org.yinwang.yin.Util;
 
 import java.util.ArrayList;
@@ -11,7 +12,7 @@ import java.util.Map;
 public class Argument {
     public List<Node> elements;
     public List<Node> positional = new ArrayList<>();
-    public Map<String, Node> keywords = new LinkedHashMap<>();
+    public Map<Symbol, Node> keywords = new LinkedHashMap<>();
 
 
     public Argument(List<Node> elements) {
@@ -37,7 +38,7 @@ public class Argument {
         for (int i = 0; i < elements.size(); i++) {
             Node key = elements.get(i);
             if (key instanceof Keyword) {
-                String id = ((Keyword) key).id;
+                Symbol id = ((Keyword) key).symbol;
                 positional.add(((Keyword) key).asName());
 
                 if (i >= elements.size() - 1) {
@@ -1,8 +1,11 @@
 package org.yinwang.yin.ast;
 
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
 import org.yinwang.yin.Util;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.RecordType;
 import org.yinwang.yin.value.RecordValue;
 import org.yinwang.yin.value.Value;
@@ -11,19 +14,44 @@ public class Attr extends Node {
     public Node value;
     public Name attr;
 
+    // index of the attribute in instances of the last few record types seen
+    public static final int MAX_CACHED = 4;
+    public RecordType[] cachedTypes = new RecordType[MAX_CACHED];
+    public int[] cachedIndexes = new int[MAX_CACHED];
+    public int cached = 0;
 
-    public Attr(Node value, Name attr, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+
+    public Attr(Node value, Name attr, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.value = value;
         this.attr = attr;
     }
 
 
     @Override
-    public Value interp(Scope s) {
-        Value record = value.interp(s);
+    public Value interp(Frame f) {
+        return get(value.interp(f));
+    }
+
+
+    /**
+     * The attribute of an evaluated record, also used by the VM
+     */
+    public Value get(Value record) {
         if (record instanceof RecordValue) {
-            Value a = ((RecordValue) record).properties.lookupLocal(attr.id);
+            RecordValue r = (RecordValue) record;
+            int index = indexIn(r.type);
+            Value a = index < 0 ? null : r.values[index];
+            if (a != null) {
+                return a;
+            } else {
+                Util.abort(attr, "attribute " + attr + " not found in record: " + record);
+                return null;
+            }
+        } else if (record instanceof RecordType) {
+            // a parameter or field declared with the record type, whose
+            // attribute has the type declared for the field
+            Value a = ((RecordType) record).properties.lookupLocalType(attr.id);
             if (a != null) {
                 return a;
             } else {
@@ -37,11 +65,48 @@ public class Attr extends Node {
     }
 
 
+    /**
+     * Index of the attribute in instances of type, or -1. Only the first
+     * lookup for each type goes through the shape map.
+     */
+    public int indexIn(RecordType type) {
+        for (int i = 0; i < cached; i++) {
+            if (cachedTypes[i] == type) {
+                return cachedIndexes[i];
+            }
+        }
+
+        int index = type.indexOf(attr.symbol);
+        if (index >= 0 && cached < MAX_CACHED) {
+            cachedTypes[cached] = type;
+            cachedIndexes[cached] = index;
+            cached++;
+        }
+        return index;
+    }
+
+
+    @Override
+    public void resolve(LexicalScope s) {
+        value.resolve(s);
+    }
+
+
     @Override
     public Value typecheck(Scope s) {
         Value record = value.typecheck(s);
         if (record instanceof RecordValue) {
-            Value a = ((RecordValue) record).properties.lookupLocal(attr.id);
+            Value a = ((RecordValue) record).get(attr.id);
+            if (a != null) {
+                return a;
+            } else {
+                Util.abort(attr, "attribute " + attr + " not found in record: " + record);
+                return null;
+            }
+        } else if (record instanceof RecordType) {
+            // a parameter or field declared with the record type, whose
+            // attribute has the type declared for the field
+            Value a = ((RecordType) record).properties.lookupLocalType(attr.id);
             if (a != null) {
                 return a;
             } else {
@@ -55,9 +120,24 @@ public class Attr extends Node {
     }
 
 
-    public void set(Value v, Scope s) {
-        Value record = value.interp(s);
-        if (record instanceof RecordType) {
+    public void set(Value v, Frame f) {
+        put(value.interp(f), v);
+    }
+
+
+    /**
+     * Assign the attribute of an evaluated record, also used by the VM
+     */
+    public void put(Value record, Value v) {
+        if (record instanceof RecordValue) {
+            int index = indexIn(((RecordValue) record).type);
+            if (index >= 0) {
+                ((RecordValue) record).values[index] = v;
+            } else {
+                Util.abort(attr,
+                        "can only assign to existing attribute in record, " + attr + " not found in: " + record);
+            }
+        } else if (record instanceof RecordType) {
             Value a = ((RecordType) record).properties.lookup(attr.id);
             if (a != null) {
                 ((RecordType) record).properties.putValue(attr.id, v);
@@ -1,7 +1,12 @@
 package org.yinwang.yin.ast;
 
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.parser.LineIndex;
+import org.yinwang.yin.value.BigIntValue;
+import org.yinwang.yin.value.Type;
 import org.yinwang.yin.value.Value;
 
 import java.math.BigInteger;
@@ -11,10 +16,11 @@ public class BigInt extends Node {
     public String content;
     public BigInteger value;
     public int base;
+    public Value literal;       // the value, created once
 
 
-    public BigInt(String content, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public BigInt(String content, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.content = content;
 
         int sign;
@@ -46,26 +52,32 @@ public class BigInt extends Node {
             value1 = value1.negate();
         }
         this.value = value1;
+        this.literal = BigIntValue.of(value1);
     }
 
 
-    public static BigInt parse(String content, String file, int start, int end, int line, int col) {
+    public static BigInt parse(String content, String file, int start, int end, LineIndex lines) {
         try {
-            return new BigInt(content, file, start, end, line, col);
+            return new BigInt(content, file, start, end, lines);
         } catch (NumberFormatException e) {
             return null;
         }
     }
 
 
-    public Value interp(Scope s) {
-        return null;
+    public Value interp(Frame f) {
+        return literal;
+    }
+
+
+    @Override
+    public void resolve(LexicalScope s) {
     }
 
 
     @Override
     public Value typecheck(Scope s) {
-        return null;
+        return Type.INT;
     }
 
 
@@ -1,6 +1,10 @@
 package org.yinwang.yin.ast;
 
+import org.yinwang.yin.Binder;
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.Value;
 
 import java.util.ArrayList;
@@ -9,20 +13,46 @@ import java.util.List;
 
 public class Block extends Node {
     public List<Node> statements = new ArrayList<>();
+    public int frameSize;
+    public int[] cellSlots;
+    public boolean scoped = true;       // false if nothing is defined, and the block runs in the enclosing frame
 
 
-    public Block(List<Node> statements, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public Block(List<Node> statements, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.statements = statements;
     }
 
 
-    public Value interp(Scope s) {
-        s = new Scope(s);
+    public Value interp(Frame f) {
+        if (scoped) {
+            f = new Frame(f, frameSize);
+            f.box(cellSlots);
+        }
         for (int i = 0; i < statements.size() - 1; i++) {
-            statements.get(i).interp(s);
+            statements.get(i).interp(f);
+        }
+        return statements.get(statements.size() - 1).interp(f);
+    }
+
+
+    @Override
+    public void resolve(LexicalScope s) {
+        LexicalScope blockScope = new LexicalScope(s);
+        for (Node statement : statements) {
+            Binder.declare(statement, blockScope);
+        }
+
+        scoped = blockScope.size() > 0;
+        if (scoped) {
+            resolveList(statements, blockScope);
+            frameSize = blockScope.size();
+            cellSlots = blockScope.cellSlots();
+        } else {
+            resolveList(statements, s);
+            frameSize = 0;
+            cellSlots = new int[0];
         }
-        return statements.get(statements.size() - 1).interp(s);
     }
 
 
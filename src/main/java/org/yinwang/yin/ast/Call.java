@@ -2,9 +2,13 @@ package org.yinwang.yin.ast;
 
 
 import org.yinwang.yin.Constants;
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.Symbol;
 import org.yinwang.yin.TypeChecker;
 import org.yinwang.yin.Util;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.*;
 
 import java.util.*;
@@ -12,59 +16,32 @@ import java.util.*;
 public class Call extends Node {
     public Node op;
     public Argument args;
+    public Dispatch dispatch = new UninitializedDispatch();
+    public boolean tail = false;        // in tail position of a function body, set by Fun
+    public Value constant;              // value of the call if folded by ConstantFolder
 
 
-    public Call(Node op, Argument args, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public Call(Node op, Argument args, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.op = op;
         this.args = args;
     }
 
 
-    public Value interp(Scope s) {
-        Value opv = this.op.interp(s);
-        if (opv instanceof Closure) {
-            Closure closure = (Closure) opv;
-            Scope funScope = new Scope(closure.env);
-            List<Name> params = closure.fun.params;
+    public Value interp(Frame f) {
+        if (constant != null) {
+            return constant;
+        }
+        return dispatch.call(this, op.interp(f), f);
+    }
 
-            // set default values for parameters
-            if (closure.properties != null) {
-                Declare.mergeDefault(closure.properties, funScope);
-            }
 
-            if (!args.positional.isEmpty() && args.keywords.isEmpty()) {
-                for (int i = 0; i < args.positional.size(); i++) {
-                    Value value = args.positional.get(i).interp(s);
-                    funScope.putValue(params.get(i).id, value);
-                }
-            } else {
-                // try to bind all arguments
-                for (Name param : params) {
-                    Node actual = args.keywords.get(param.id);
-                    if (actual != null) {
-                        Value value = actual.interp(funScope);
-                        funScope.putValue(param.id, value);
-                    }
-                }
-            }
-            return closure.fun.body.interp(funScope);
-        } else if (opv instanceof RecordType) {
-            RecordType template = (RecordType) opv;
-            Scope values = new Scope();
-
-            // set default values for fields
-            Declare.mergeDefault(template.properties, values);
-
-            // instantiate
-            return new RecordValue(template.name, template, values);
-        } else if (opv instanceof PrimFun) {
-            PrimFun prim = (PrimFun) opv;
-            List<Value> args = Node.interpList(this.args.positional, s);
-            return prim.apply(args, this);
-        } else {  // can't happen
-            Util.abort(this.op, "calling non-function: " + opv);
-            return Value.VOID;
+    @Override
+    public void resolve(LexicalScope s) {
+        op.resolve(s);
+        resolveList(args.positional, s);
+        for (Node v : args.keywords.values()) {
+            v.resolve(s);
         }
     }
 
@@ -102,13 +79,13 @@ public class Call extends Node {
                 }
             } else {
                 // keywords
-                Set<String> seen = new HashSet<>();
+                Set<Symbol> seen = new HashSet<>();
 
                 // try to bind all arguments
                 for (Name param : params) {
-                    Node actual = args.keywords.get(param.id);
+                    Node actual = args.keywords.get(param.symbol);
                     if (actual != null) {
-                        seen.add(param.id);
+                        seen.add(param.symbol);
                         Value value = actual.typecheck(funScope);
                         Value expected = funScope.lookup(param.id);
                         if (!Type.subtype(value, expected, false)) {
@@ -122,8 +99,8 @@ public class Call extends Node {
                 }
 
                 // detect extra arguments
-                List<String> extra = new ArrayList<>();
-                for (String id : args.keywords.keySet()) {
+                List<Symbol> extra = new ArrayList<>();
+                for (Symbol id : args.keywords.keySet()) {
                     if (!seen.contains(id)) {
                         extra.add(id);
                     }
@@ -157,34 +134,33 @@ public class Call extends Node {
             }
         } else if (fun instanceof RecordType) {
             RecordType template = (RecordType) fun;
-            Scope values = new Scope();
 
-            // set default values for fields
-            Declare.mergeDefault(template.properties, values);
+            // start with the default values for fields
+            RecordValue record = template.instantiate();
 
             // set actual values, overwrite defaults if any
-            for (Map.Entry<String, Node> e : args.keywords.entrySet()) {
-                if (!template.properties.keySet().contains(e.getKey())) {
+            for (Map.Entry<Symbol, Node> e : args.keywords.entrySet()) {
+                int index = template.indexOf(e.getKey());
+                if (index < 0) {
                     Util.abort(this, "extra keyword argument: " + e.getKey());
                 }
 
                 Value actual = args.keywords.get(e.getKey()).typecheck(s);
-                Value expected = template.properties.lookupLocalType(e.getKey());
+                Value expected = template.properties.lookupLocalType(e.getKey().name);
                 if (!Type.subtype(actual, expected, false)) {
                     Util.abort(this, "type error. expected: " + expected + ", actual: " + actual);
                 }
-                values.putValue(e.getKey(), e.getValue().typecheck(s));
+                record.values[index] = e.getValue().typecheck(s);
             }
 
             // check uninitialized fields
-            for (String field : template.properties.keySet()) {
-                if (values.lookupLocal(field) == null) {
-                    Util.abort(this, "field is not initialized: " + field);
+            for (int i = 0; i < record.values.length; i++) {
+                if (record.values[i] == null) {
+                    Util.abort(this, "field is not initialized: " + template.fields[i]);
                 }
             }
 
-            // instantiate
-            return new RecordValue(template.name, template, values);
+            return record;
         } else if (fun instanceof PrimFun) {
             PrimFun prim = (PrimFun) fun;
             if (prim.arity >= 0 && args.positional.size() != prim.arity) {
@@ -0,0 +1,46 @@
+package org.yinwang.yin.ast;
+
+
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.value.Closure;
+import org.yinwang.yin.value.TailCall;
+import org.yinwang.yin.value.Value;
+
+
+/**
+ * Cached call to closures of one function. The guard only compares the Fun
+ * node, so closures created by the same fun expression share an entry.
+ */
+public class ClosureDispatch extends Dispatch {
+
+    public Fun fun;
+    public ParamBinding binding;
+    public Dispatch next;
+    public int depth;
+
+
+    public ClosureDispatch(Fun fun, ParamBinding binding, Dispatch next, int depth) {
+        this.fun = fun;
+        this.binding = binding;
+        this.next = next;
+        this.depth = depth;
+    }
+
+
+    @Override
+    public Value call(Call call, Value callee, Frame f) {
+        if (callee instanceof Closure && ((Closure) callee).fun == fun) {
+            Closure closure = (Closure) callee;
+            Frame funFrame = new Frame(closure);
+            binding.bind(call, closure, f, funFrame);
+            if (call.tail) {
+                return new TailCall(closure, funFrame);
+            } else {
+                return closure.invoke(funFrame);
+            }
+        } else {
+            return next.call(call, callee, f);
+        }
+    }
+
+}
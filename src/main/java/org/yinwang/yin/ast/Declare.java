@@ -1,10 +1,14 @@
 package org.yinwang.yin.ast;
 
 import org.yinwang.yin.Constants;
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
 import org.yinwang.yin.Util;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.Value;
 
+import java.util.List;
 import java.util.Map;
 
 
@@ -12,38 +16,26 @@ public class Declare extends Node {
     public Scope propertyForm;
 
 
-    public Declare(Scope propertyForm, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public Declare(Scope propertyForm, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.propertyForm = propertyForm;
     }
 
 
-    public Value interp(Scope s) {
+    public Value interp(Frame f) {
 //        mergeProperties(propsNode, s);
         return Value.VOID;
     }
 
 
     @Override
-    public Value typecheck(Scope s) {
-        return null;
+    public void resolve(LexicalScope s) {
     }
 
 
-    public static void mergeDefault(Scope properties, Scope s) {
-        for (String key : properties.keySet()) {
-            Object defaultValue = properties.lookupPropertyLocal(key, "default");
-            if (defaultValue == null) {
-                continue;
-            } else if (defaultValue instanceof Value) {
-                Value existing = s.lookup(key);
-                if (existing == null) {
-                    s.putValue(key, (Value) defaultValue);
-                }
-            } else {
-                Util.abort("default value is not a value, shouldn't happen");
-            }
-        }
+    @Override
+    public Value typecheck(Scope s) {
+        return null;
     }
 
 
@@ -67,7 +59,37 @@ public class Declare extends Node {
     }
 
 
-    public static Scope evalProperties(Scope unevaled, Scope s) {
+    public static void mergeDefault(Scope properties, List<Name> params, Frame f) {
+        for (Name param : params) {
+            if (f.slots[param.slot] != null) {
+                continue;
+            }
+            Object defaultValue = properties.lookupPropertyLocal(param.id, "default");
+            if (defaultValue == null) {
+                continue;
+            } else if (defaultValue instanceof Value) {
+                f.slots[param.slot] = defaultValue;
+            } else {
+                Util.abort("default value is not a value, shouldn't happen");
+            }
+        }
+    }
+
+
+    public static void resolveProperties(Scope unresolved, LexicalScope s) {
+        for (String field : unresolved.keySet()) {
+            for (Object v : unresolved.lookupAllProps(field).values()) {
+                if (v instanceof Node) {
+                    ((Node) v).resolve(s);
+                } else {
+                    Util.abort("property is not a node, parser bug: " + v);
+                }
+            }
+        }
+    }
+
+
+    public static Scope evalProperties(Scope unevaled, Frame f) {
         Scope evaled = new Scope();
 
         for (String field : unevaled.keySet()) {
@@ -75,7 +97,7 @@ public class Declare extends Node {
             for (Map.Entry<String, Object> e : props.entrySet()) {
                 Object v = e.getValue();
                 if (v instanceof Node) {
-                    Value vValue = ((Node) v).interp(s);
+                    Value vValue = ((Node) v).interp(f);
                     evaled.put(field, e.getKey(), vValue);
                 } else {
                     Util.abort("property is not a node, parser bug: " + v);
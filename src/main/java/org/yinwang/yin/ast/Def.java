@@ -2,7 +2,10 @@ package org.yinwang.yin.ast;
 
 import org.yinwang.yin.Binder;
 import org.yinwang.yin.Constants;
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.Value;
 
 public class Def extends Node {
@@ -10,21 +13,28 @@ public class Def extends Node {
     public Node value;
 
 
-    public Def(Node pattern, Node value, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public Def(Node pattern, Node value, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.pattern = pattern;
         this.value = value;
     }
 
 
-    public Value interp(Scope s) {
-        Value valueValue = value.interp(s);
+    public Value interp(Frame f) {
+        Value valueValue = value.interp(f);
         Binder.checkDup(pattern);
-        Binder.define(pattern, valueValue, s);
+        Binder.define(pattern, valueValue, f);
         return Value.VOID;
     }
 
 
+    @Override
+    public void resolve(LexicalScope s) {
+        value.resolve(s);
+        Binder.resolveDefine(pattern, s);
+    }
+
+
     @Override
     public Value typecheck(Scope s) {
         Value t = value.typecheck(s);
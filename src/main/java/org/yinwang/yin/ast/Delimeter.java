@@ -1,7 +1,10 @@
 package org.yinwang.yin.ast;
 
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.Value;
 
 import java.util.HashMap;
@@ -13,17 +16,22 @@ public class Delimeter extends Node {
     public String shape;
 
 
-    public Delimeter(String shape, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public Delimeter(String shape, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.shape = shape;
     }
 
 
-    public Value interp(Scope s) {
+    public Value interp(Frame f) {
         return null;
     }
 
 
+    @Override
+    public void resolve(LexicalScope s) {
+    }
+
+
     @Override
     public Value typecheck(Scope s) {
         return null;
@@ -0,0 +1,18 @@
+package org.yinwang.yin.ast;
+
+
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.value.Value;
+
+
+/**
+ * How a Call node invokes its operator. A call site starts with an
+ * UninitializedDispatch and rewrites its own dispatch as it observes
+ * callees: uninitialized -> monomorphic -> polymorphic (a chain of
+ * ClosureDispatch) -> megamorphic (GenericDispatch).
+ */
+public abstract class Dispatch {
+
+    public abstract Value call(Call call, Value callee, Frame f);
+
+}
@@ -1,7 +1,10 @@
 package org.yinwang.yin.ast;
 
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.FloatValue;
 import org.yinwang.yin.value.Value;
 
@@ -9,27 +12,33 @@ public class FloatNum extends Node {
 
     public String content;
     public double value;
+    public Value literal;       // the value, created once
 
 
-    public FloatNum(String content, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public FloatNum(String content, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.content = content;
         this.value = Double.parseDouble(content);
-
+        this.literal = new FloatValue(value);
     }
 
 
-    public static FloatNum parse(String content, String file, int start, int end, int line, int col) {
+    public static FloatNum parse(String content, String file, int start, int end, LineIndex lines) {
         try {
-            return new FloatNum(content, file, start, end, line, col);
+            return new FloatNum(content, file, start, end, lines);
         } catch (NumberFormatException e) {
             return null;
         }
     }
 
 
-    public Value interp(Scope s) {
-        return new FloatValue(value);
+    public Value interp(Frame f) {
+        return literal;
+    }
+
+
+    @Override
+    public void resolve(LexicalScope s) {
     }
 
 
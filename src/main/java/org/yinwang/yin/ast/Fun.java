@@ -2,32 +2,115 @@ package org.yinwang.yin.ast;
 
 
 import org.yinwang.yin.Constants;
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.Symbol;
 import org.yinwang.yin.TypeChecker;
+import org.yinwang.yin.jit.CompiledCode;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.Closure;
 import org.yinwang.yin.value.FunType;
 import org.yinwang.yin.value.Value;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class Fun extends Node {
     public List<Name> params;
     public Node body;
     public Scope propertyForm;
+    public int frameSize;
+    public CompiledCode code;       // generated code of the body, null if interpreted
 
+    // free variables, resolved in the scope where the function is created
+    public List<Name> captures = new ArrayList<>();
+    public int[] cellSlots;         // parameters which must be boxed
+    public Scope constantProperties;    // evaluated property form if it is constant, shared by closures
+    public Value[] constantDefaults;    // default of each parameter in constantProperties, shared too
 
-    public Fun(List<Name> params, Scope propertyForm, Node body, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    static final Object[] NO_CAPTURES = new Object[0];
+
+
+    public Fun(List<Name> params, Scope propertyForm, Node body, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.params = params;
         this.propertyForm = propertyForm;     // unevaluated property form
         this.body = body;
+        markTail(body);
+    }
+
+
+    /**
+     * Mark the calls whose value is returned directly from the function
+     */
+    public static void markTail(Node node) {
+        if (node instanceof Call) {
+            ((Call) node).tail = true;
+        } else if (node instanceof Block) {
+            List<Node> statements = ((Block) node).statements;
+            markTail(statements.get(statements.size() - 1));
+        } else if (node instanceof If) {
+            markTail(((If) node).then);
+            markTail(((If) node).orelse);
+        }
     }
 
 
-    public Value interp(Scope s) {
+    public Value interp(Frame f) {
         // evaluate and cache the properties in the closure
-        Scope properties = propertyForm == null ? null : Declare.evalProperties(propertyForm, s);
-        return new Closure(this, properties, s);
+        Scope properties = constantProperties;
+        if (properties == null && propertyForm != null) {
+            properties = Declare.evalProperties(propertyForm, f);
+        }
+
+        // a closure without free variables is the only allocation
+        if (captures.isEmpty()) {
+            return new Closure(this, properties, NO_CAPTURES);
+        }
+        Object[] captured = new Object[captures.size()];
+        for (int i = 0; i < captured.length; i++) {
+            captured[i] = captures.get(i).lookupRaw(f);
+        }
+        return new Closure(this, properties, captured);
+    }
+
+
+    /**
+     * Index of the free variable id, adding it if it is new
+     *
+     * @param outer the scope where the function is created
+     */
+    public int capture(Symbol symbol, LexicalScope outer) {
+        for (int i = 0; i < captures.size(); i++) {
+            if (captures.get(i).symbol == symbol) {
+                return i;
+            }
+        }
+
+        Name name = new Name(symbol, null, 0, 0, null);
+        name.resolve(outer);
+        outer.getAncestor(name.depth).markCaptured(symbol, start);
+        captures.add(name);
+        return captures.size() - 1;
+    }
+
+
+    @Override
+    public void resolve(LexicalScope s) {
+        if (propertyForm != null) {
+            Declare.resolveProperties(propertyForm, s);
+        }
+
+        LexicalScope funScope = new LexicalScope(s);
+        funScope.fun = this;
+        for (Name param : params) {
+            param.depth = 0;
+            param.slot = funScope.define(param.symbol);
+        }
+        body.resolve(funScope);
+        frameSize = funScope.size();
+        cellSlots = funScope.cellSlots();
     }
 
 
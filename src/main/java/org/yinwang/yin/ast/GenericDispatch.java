@@ -0,0 +1,50 @@
+package org.yinwang.yin.ast;
+
+
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.Symbol;
+import org.yinwang.yin.Util;
+import org.yinwang.yin.value.*;
+
+import java.util.Map;
+
+
+/**
+ * Megamorphic call site, or a call to something other than a closure.
+ * Looks at the callee every time.
+ */
+public class GenericDispatch extends Dispatch {
+
+    @Override
+    public Value call(Call call, Value callee, Frame f) {
+        if (callee instanceof Closure) {
+            Closure closure = (Closure) callee;
+            Frame funFrame = new Frame(closure);
+            ParamBinding.bindGeneric(call, closure, f, funFrame);
+            if (call.tail) {
+                return new TailCall(closure, funFrame);
+            } else {
+                return closure.invoke(funFrame);
+            }
+        } else if (callee instanceof RecordType) {
+            RecordType template = (RecordType) callee;
+            RecordValue record = template.instantiate();
+
+            // keyword arguments overwrite the defaults
+            for (Map.Entry<Symbol, Node> e : call.args.keywords.entrySet()) {
+                int index = template.indexOf(e.getKey());
+                if (index < 0) {
+                    Util.abort(call, "extra keyword argument: " + e.getKey());
+                }
+                record.values[index] = e.getValue().interp(f);
+            }
+            return record;
+        } else if (callee instanceof PrimFun) {
+            return PrimitiveDispatch.apply((PrimFun) callee, call, f);
+        } else {
+            Util.abort(call.op, "calling non-function: " + callee);
+            return Value.VOID;
+        }
+    }
+
+}
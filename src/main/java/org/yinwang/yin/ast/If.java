@@ -1,8 +1,11 @@
 package org.yinwang.yin.ast;
 
 import org.yinwang.yin.Constants;
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
 import org.yinwang.yin.Util;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.BoolType;
 import org.yinwang.yin.value.BoolValue;
 import org.yinwang.yin.value.UnionType;
@@ -14,24 +17,32 @@ public class If extends Node {
     public Node orelse;
 
 
-    public If(Node test, Node then, Node orelse, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public If(Node test, Node then, Node orelse, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.test = test;
         this.then = then;
         this.orelse = orelse;
     }
 
 
-    public Value interp(Scope s) {
-        Value tv = interp(test, s);
+    public Value interp(Frame f) {
+        Value tv = interp(test, f);
         if (((BoolValue) tv).value) {
-            return interp(then, s);
+            return interp(then, f);
         } else {
-            return interp(orelse, s);
+            return interp(orelse, f);
         }
     }
 
 
+    @Override
+    public void resolve(LexicalScope s) {
+        test.resolve(s);
+        then.resolve(s);
+        orelse.resolve(s);
+    }
+
+
     @Override
     public Value typecheck(Scope s) {
         Value tv = typecheck(test, s);
@@ -1,7 +1,10 @@
 package org.yinwang.yin.ast;
 
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.IntType;
 import org.yinwang.yin.value.IntValue;
 import org.yinwang.yin.value.Type;
@@ -10,12 +13,13 @@ import org.yinwang.yin.value.Value;
 public class IntNum extends Node {
 
     public String content;
-    public int value;
+    public long value;
     public int base;
+    public Value literal;       // the value, created once
 
 
-    public IntNum(String content, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public IntNum(String content, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.content = content;
 
         int sign;
@@ -39,24 +43,30 @@ public class IntNum extends Node {
             base = 10;
         }
 
-        this.value = Integer.parseInt(content, base);
+        this.value = Long.parseLong(content, base);
         if (sign == -1) {
             this.value = -this.value;
         }
+        this.literal = IntValue.of(this.value);
     }
 
 
-    public static IntNum parse(String content, String file, int start, int end, int line, int col) {
+    public static IntNum parse(String content, String file, int start, int end, LineIndex lines) {
         try {
-            return new IntNum(content, file, start, end, line, col);
+            return new IntNum(content, file, start, end, lines);
         } catch (NumberFormatException e) {
             return null;
         }
     }
 
 
-    public Value interp(Scope s) {
-        return new IntValue(value);
+    public Value interp(Frame f) {
+        return literal;
+    }
+
+
+    @Override
+    public void resolve(LexicalScope s) {
     }
 
 
@@ -68,7 +78,7 @@ public class IntNum extends Node {
 
     @Override
     public String toString() {
-        return Integer.toString(value);
+        return Long.toString(value);
     }
 
 }
@@ -1,31 +1,47 @@
 package org.yinwang.yin.ast;
 
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.Symbol;
 import org.yinwang.yin.Util;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.Value;
 
 public class Keyword extends Node {
-    public String id;
+    public Symbol symbol;
+    public String id;           // the name of symbol, without the colon
 
 
-    public Keyword(String id, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
-        this.id = id;
+    public Keyword(String id, String file, int start, int end, LineIndex lines) {
+        this(Symbol.intern(id), file, start, end, lines);
+    }
+
+
+    public Keyword(Symbol symbol, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
+        this.symbol = symbol;
+        this.id = symbol.name;
     }
 
 
     public Name asName() {
-        return new Name(id, file, start, end, line, col);
+        return new Name(symbol, file, start, end, lines);
     }
 
 
-    public Value interp(Scope s) {
+    public Value interp(Frame f) {
         Util.abort(this, "keyword used as value");
         return null;
     }
 
 
+    @Override
+    public void resolve(LexicalScope s) {
+    }
+
+
     @Override
     public Value typecheck(Scope s) {
         Util.abort(this, "keyword used as value");
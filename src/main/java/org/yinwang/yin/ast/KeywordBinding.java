@@ -0,0 +1,74 @@
+package org.yinwang.yin.ast;
+
+
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.value.Closure;
+import org.yinwang.yin.value.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Binding plan for a keyword call. The keywords are matched to parameters
+ * once, so a call only evaluates the arguments into their slots and fills
+ * in the defaults of the parameters it doesn't supply.
+ */
+public class KeywordBinding extends ParamBinding {
+
+    public Node[] actuals;      // keyword arguments which name a parameter, in parameter order
+    public int[] slots;         // parameter slot of each of them
+    public int[] missing;       // indexes of the parameters not supplied
+
+
+    public KeywordBinding(Call call, Fun fun) {
+        List<Node> actualList = new ArrayList<>();
+        List<Integer> slotList = new ArrayList<>();
+        for (Name param : fun.params) {
+            Node actual = call.args.keywords.get(param.symbol);
+            if (actual != null) {
+                actualList.add(actual);
+                slotList.add(param.slot);
+            }
+        }
+
+        List<Integer> missingList = new ArrayList<>();
+        for (int i = 0; i < fun.params.size(); i++) {
+            if (!call.args.keywords.containsKey(fun.params.get(i).symbol)) {
+                missingList.add(i);
+            }
+        }
+
+        actuals = actualList.toArray(new Node[actualList.size()]);
+        slots = toArray(slotList);
+        missing = toArray(missingList);
+    }
+
+
+    @Override
+    public void bind(Call call, Closure closure, Frame f, Frame funFrame) {
+        for (int i = 0; i < actuals.length; i++) {
+            funFrame.slots[slots[i]] = actuals[i].interp(f);
+        }
+
+        if (missing.length > 0 && closure.properties != null) {
+            Value[] defaults = closure.getDefaults();
+            List<Name> params = closure.fun.params;
+            for (int i : missing) {
+                if (defaults[i] != null) {
+                    funFrame.slots[params.get(i).slot] = defaults[i];
+                }
+            }
+        }
+    }
+
+
+    static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+}
@@ -1,17 +1,33 @@
 package org.yinwang.yin.ast;
 
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.Symbol;
 import org.yinwang.yin.Util;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.Value;
 
 public class Name extends Node {
-    public String id;
+    public Symbol symbol;
+    public String id;           // the name of symbol
 
+    // lexical address, filled in by resolve. depth is -1 if unbound
+    public int depth = -1;
+    public int slot;
+    public int capture = -1;    // index in the captured variables if free in the enclosing function
 
-    public Name(String id, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
-        this.id = id;
+
+    public Name(String id, String file, int start, int end, LineIndex lines) {
+        this(Symbol.intern(id), file, start, end, lines);
+    }
+
+
+    public Name(Symbol symbol, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
+        this.symbol = symbol;
+        this.id = symbol.name;
     }
 
 
@@ -19,12 +35,54 @@ public class Name extends Node {
      * Generate a name without location info
      */
     public static Name genName(String id) {
-        return new Name(id, null, 0, 0, 0, 0);
+        return new Name(id, null, 0, 0, null);
+    }
+
+
+    public Value interp(Frame f) {
+        return Frame.deref(lookupRaw(f));
+    }
+
+
+    /**
+     * The slot content of the variable, which is a Cell if it is boxed
+     */
+    public Object lookupRaw(Frame f) {
+        if (capture >= 0) {
+            return f.captured[capture];
+        } else if (depth >= 0) {
+            return f.getAncestor(depth).slots[slot];
+        } else {
+            // unbound variable
+            return null;
+        }
     }
 
 
-    public Value interp(Scope s) {
-        return s.lookup(id);
+    public void set(Frame f, Value value) {
+        if (capture >= 0) {
+            Frame.put(f.captured, capture, value);
+        } else {
+            f.put(depth, slot, value);
+        }
+    }
+
+
+    @Override
+    public void resolve(LexicalScope s) {
+        depth = s.lookupDepth(symbol);
+        if (depth >= 0) {
+            slot = s.getAncestor(depth).lookupLocal(symbol);
+
+            // a variable of an enclosing function is captured by the innermost function in between
+            LexicalScope t = s;
+            for (int i = 0; i < depth; i++, t = t.parent) {
+                if (t.fun != null) {
+                    capture = t.fun.capture(symbol, t.parent);
+                    break;
+                }
+            }
+        }
     }
 
 
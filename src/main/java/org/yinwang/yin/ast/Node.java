@@ -1,6 +1,9 @@
 package org.yinwang.yin.ast;
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.Value;
 
 import java.util.ArrayList;
@@ -10,24 +13,39 @@ public abstract class Node {
     public String file;
     public int start;
     public int end;
-    public int line;
-    public int col;
+    public LineIndex lines;     // lines of the text, null for nodes made by the interpreter
 
 
-    protected Node(String file, int start, int end, int line, int col) {
+    protected Node(String file, int start, int end, LineIndex lines) {
         this.file = file;
         this.start = start;
         this.end = end;
-        this.line = line;
-        this.col = col;
+        this.lines = lines;
     }
 
 
-    public abstract Value interp(Scope s);
+    /**
+     * Line of the node, counting from 0. Only offsets are kept in nodes,
+     * the line and column are found when they are needed.
+     */
+    public int line() {
+        return lines == null ? 0 : lines.line(start);
+    }
 
 
-    public static Value interp(Node node, Scope s) {
-        return node.interp(s);
+    /**
+     * Column of the node, counting from 0
+     */
+    public int col() {
+        return lines == null ? 0 : lines.col(start);
+    }
+
+
+    public abstract Value interp(Frame f);
+
+
+    public static Value interp(Node node, Frame f) {
+        return node.interp(f);
     }
 
 
@@ -39,10 +57,23 @@ public abstract class Node {
     }
 
 
-    public static List<Value> interpList(List<Node> nodes, Scope s) {
+    /**
+     * Resolve names to lexical addresses, must run once before interp
+     */
+    public abstract void resolve(LexicalScope s);
+
+
+    public static void resolveList(List<? extends Node> nodes, LexicalScope s) {
+        for (Node n : nodes) {
+            n.resolve(s);
+        }
+    }
+
+
+    public static List<Value> interpList(List<Node> nodes, Frame f) {
         List<Value> values = new ArrayList<>();
         for (Node n : nodes) {
-            values.add(n.interp(s));
+            values.add(n.interp(f));
         }
         return values;
     }
@@ -58,7 +89,7 @@ public abstract class Node {
 
 
     public String getFileLineCol() {
-        return file + ":" + (line + 1) + ":" + (col + 1);
+        return file + ":" + (line() + 1) + ":" + (col() + 1);
     }
 
 
@@ -0,0 +1,69 @@
+package org.yinwang.yin.ast;
+
+
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.Util;
+import org.yinwang.yin.value.Closure;
+import org.yinwang.yin.value.Value;
+
+import java.util.List;
+
+
+/**
+ * How the arguments of one call site are bound to the parameters of one
+ * function, computed once and cached by ClosureDispatch.
+ */
+public abstract class ParamBinding {
+
+    public abstract void bind(Call call, Closure closure, Frame f, Frame funFrame);
+
+
+    public static ParamBinding create(Call call, Fun fun) {
+        if (call.args.keywords.isEmpty()) {
+            checkPositional(call, fun);
+            return new PositionalBinding(fun);
+        } else {
+            return new KeywordBinding(call, fun);
+        }
+    }
+
+
+    static void checkPositional(Call call, Fun fun) {
+        if (call.args.positional.size() > fun.params.size()) {
+            Util.abort(call, "calling function with too many arguments. expected: " + fun.params.size()
+                    + " actual: " + call.args.positional.size());
+        }
+    }
+
+
+    /**
+     * Bind without a cached plan, for megamorphic call sites. Arguments are
+     * checked and evaluated as with a plan, so a call site behaves the same
+     * before and after it goes megamorphic.
+     */
+    public static void bindGeneric(Call call, Closure closure, Frame f, Frame funFrame) {
+        List<Name> params = closure.fun.params;
+
+        if (call.args.keywords.isEmpty()) {
+            checkPositional(call, closure.fun);
+            for (int i = 0; i < call.args.positional.size(); i++) {
+                Value value = call.args.positional.get(i).interp(f);
+                funFrame.slots[params.get(i).slot] = value;
+            }
+        } else {
+            // in parameter order, like KeywordBinding
+            for (Name param : params) {
+                Node actual = call.args.keywords.get(param.symbol);
+                if (actual != null) {
+                    funFrame.slots[param.slot] = actual.interp(f);
+                }
+            }
+        }
+
+        // set default values for parameters not supplied
+        if (closure.properties != null) {
+            Declare.mergeDefault(closure.properties, params, funFrame);
+        }
+    }
+
+}
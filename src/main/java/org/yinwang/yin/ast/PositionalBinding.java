@@ -0,0 +1,43 @@
+package org.yinwang.yin.ast;
+
+
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.value.Closure;
+import org.yinwang.yin.value.Value;
+
+import java.util.List;
+
+
+public class PositionalBinding extends ParamBinding {
+
+    // parameter slot for each argument position
+    public int[] slots;
+
+
+    public PositionalBinding(Fun fun) {
+        this.slots = new int[fun.params.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = fun.params.get(i).slot;
+        }
+    }
+
+
+    @Override
+    public void bind(Call call, Closure closure, Frame f, Frame funFrame) {
+        List<Node> actuals = call.args.positional;
+        for (int i = 0; i < actuals.size(); i++) {
+            funFrame.slots[slots[i]] = actuals.get(i).interp(f);
+        }
+
+        // defaults can only be needed if some parameters are missing
+        if (actuals.size() < slots.length && closure.properties != null) {
+            Value[] defaults = closure.getDefaults();
+            for (int i = actuals.size(); i < slots.length; i++) {
+                if (defaults[i] != null) {
+                    funFrame.slots[slots[i]] = defaults[i];
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.yinwang.yin.ast;
+
+
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.value.PrimFun;
+import org.yinwang.yin.value.Value;
+
+import java.util.List;
+
+
+/**
+ * Cached call to a primitive function. A call site which sees any other
+ * callee goes megamorphic.
+ */
+public class PrimitiveDispatch extends Dispatch {
+
+    public PrimFun prim;
+
+
+    public PrimitiveDispatch(PrimFun prim) {
+        this.prim = prim;
+    }
+
+
+    @Override
+    public Value call(Call call, Value callee, Frame f) {
+        if (callee == prim) {
+            return apply(prim, call, f);
+        } else {
+            call.dispatch = new GenericDispatch();
+            return call.dispatch.call(call, callee, f);
+        }
+    }
+
+
+    /**
+     * Use the fixed-arity entry points when possible, so that no argument
+     * list is allocated.
+     */
+    public static Value apply(PrimFun prim, Call call, Frame f) {
+        List<Node> args = call.args.positional;
+        switch (args.size()) {
+            case 1:
+                return prim.apply1(args.get(0).interp(f), call);
+            case 2:
+                return prim.apply2(args.get(0).interp(f), args.get(1).interp(f), call);
+            default:
+                return prim.apply(Node.interpList(args, f), call);
+        }
+    }
+
+}
@@ -1,8 +1,11 @@
 package org.yinwang.yin.ast;
 
 import org.yinwang.yin.Constants;
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
 import org.yinwang.yin.Util;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.RecordType;
 import org.yinwang.yin.value.Value;
 
@@ -18,30 +21,41 @@ public class RecordDef extends Node {
 
 
     public RecordDef(Name name, List<Name> parents, Scope propertyForm,
-                     String file, int start, int end, int line, int col)
+                     String file, int start, int end, LineIndex lines)
     {
-        super(file, start, end, line, col);
+        super(file, start, end, lines);
         this.name = name;
         this.parents = parents;
         this.propertyForm = propertyForm;
     }
 
 
-    public Value interp(Scope s) {
-        Scope properties = Declare.evalProperties(propertyForm, s);
+    public Value interp(Frame f) {
+        Scope properties = Declare.evalProperties(propertyForm, f);
 
         if (parents != null) {
             for (Node p : parents) {
-                Value pv = p.interp(s);
+                Value pv = p.interp(f);
                 properties.putAll(((RecordType) pv).properties);
             }
         }
         Value r = new RecordType(name.id, this, properties);
-        s.putValue(name.id, r);
+        f.put(name.depth, name.slot, r);
         return r;
     }
 
 
+    @Override
+    public void resolve(LexicalScope s) {
+        Declare.resolveProperties(propertyForm, s);
+        if (parents != null) {
+            resolveList(parents, s);
+        }
+        name.depth = 0;
+        name.slot = s.define(name.symbol);
+    }
+
+
     @Override
     public Value typecheck(Scope s) {
         Scope properties = Declare.typecheckProperties(propertyForm, s);
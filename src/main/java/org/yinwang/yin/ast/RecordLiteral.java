@@ -1,8 +1,11 @@
 package org.yinwang.yin.ast;
 
 import org.yinwang.yin.Constants;
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
 import org.yinwang.yin.Util;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.RecordType;
 import org.yinwang.yin.value.Value;
 
@@ -16,8 +19,8 @@ public class RecordLiteral extends Node {
     public Map<String, Node> map = new LinkedHashMap<>();
 
 
-    public RecordLiteral(List<Node> contents, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public RecordLiteral(List<Node> contents, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
 
         if (contents.size() % 2 != 0) {
             Util.abort(this, "record initializer must have even number of elements");
@@ -39,15 +42,23 @@ public class RecordLiteral extends Node {
     }
 
 
-    public Value interp(Scope s) {
+    public Value interp(Frame f) {
         Scope properties = new Scope();
         for (Map.Entry<String, Node> e : map.entrySet()) {
-            properties.putValue(e.getKey(), e.getValue().interp(s));
+            properties.putValue(e.getKey(), e.getValue().interp(f));
         }
         return new RecordType(null, this, properties);
     }
 
 
+    @Override
+    public void resolve(LexicalScope s) {
+        for (Node v : map.values()) {
+            v.resolve(s);
+        }
+    }
+
+
     @Override
     public Value typecheck(Scope s) {
         Scope properties = new Scope();
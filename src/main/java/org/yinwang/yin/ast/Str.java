@@ -1,7 +1,10 @@
 package org.yinwang.yin.ast;
 
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.StringType;
 import org.yinwang.yin.value.StringValue;
 import org.yinwang.yin.value.Type;
@@ -9,16 +12,23 @@ import org.yinwang.yin.value.Value;
 
 public class Str extends Node {
     public String value;
+    public Value literal;       // the value, created once
 
 
-    public Str(String value, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public Str(String value, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.value = value;
+        this.literal = new StringValue(value);
     }
 
 
-    public Value interp(Scope s) {
-        return new StringValue(value);
+    public Value interp(Frame f) {
+        return literal;
+    }
+
+
+    @Override
+    public void resolve(LexicalScope s) {
     }
 
 
@@ -1,30 +1,31 @@
 package org.yinwang.yin.ast;
 
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
 import org.yinwang.yin.Util;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.IntValue;
 import org.yinwang.yin.value.Value;
 import org.yinwang.yin.value.Vector;
 
-import java.util.List;
-
 public class Subscript extends Node {
     public Node value;
     public Node index;
 
 
-    public Subscript(Node value, Node index, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public Subscript(Node value, Node index, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.value = value;
         this.index = index;
     }
 
 
     @Override
-    public Value interp(Scope s) {
-        Value vector = value.interp(s);
-        Value indexValue = index.interp(s);
+    public Value interp(Frame f) {
+        Value vector = value.interp(f);
+        Value indexValue = index.interp(f);
 
         if (!(vector instanceof Vector)) {
             Util.abort(value, "subscripting non-vector: " + vector);
@@ -36,11 +37,11 @@ public class Subscript extends Node {
             return null;
         }
 
-        List<Value> values = ((Vector) vector).values;
-        int i = ((IntValue) indexValue).value;
+        Vector values = (Vector) vector;
+        long i = ((IntValue) indexValue).value;
 
         if (i >= 0 && i < values.size()) {
-            return values.get(i);
+            return values.get((int) i);
         } else {
             Util.abort(this, "subscript out of bound: " + i + " v.s. [0, " + (values.size() - 1) + "]");
             return null;
@@ -48,15 +49,22 @@ public class Subscript extends Node {
     }
 
 
+    @Override
+    public void resolve(LexicalScope s) {
+        value.resolve(s);
+        index.resolve(s);
+    }
+
+
     @Override
     public Value typecheck(Scope s) {
         return null;
     }
 
 
-    public void set(Value v, Scope s) {
-        Value vector = value.interp(s);
-        Value indexValue = index.interp(s);
+    public void set(Value v, Frame f) {
+        Value vector = value.interp(f);
+        Value indexValue = index.interp(f);
 
         if (!(vector instanceof Vector)) {
             Util.abort(value, "subscripting non-vector: " + vector);
@@ -67,10 +75,10 @@ public class Subscript extends Node {
         }
 
         Vector vector1 = (Vector) vector;
-        int i = ((IntValue) indexValue).value;
+        long i = ((IntValue) indexValue).value;
 
         if (i >= 0 && i < vector1.size()) {
-            vector1.set(i, v);
+            vector1.set((int) i, v);
         } else {
             Util.abort(this, "subscript out of bound: " + i + " v.s. [0, " + (vector1.size() - 1) + "]");
         }
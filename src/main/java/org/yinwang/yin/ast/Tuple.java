@@ -1,6 +1,9 @@
 package org.yinwang.yin.ast;
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.Value;
 
 import java.util.ArrayList;
@@ -13,8 +16,8 @@ public class Tuple extends Node {
     public Node close;
 
 
-    public Tuple(List<Node> elements, Node open, Node close, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public Tuple(List<Node> elements, Node open, Node close, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.elements = elements;
         this.open = open;
         this.close = close;
@@ -30,11 +33,16 @@ public class Tuple extends Node {
     }
 
 
-    public Value interp(Scope s) {
+    public Value interp(Frame f) {
         return null;
     }
 
 
+    @Override
+    public void resolve(LexicalScope s) {
+    }
+
+
     @Override
     public Value typecheck(Scope s) {
         return null;
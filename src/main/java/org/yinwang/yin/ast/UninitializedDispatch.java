@@ -0,0 +1,34 @@
+package org.yinwang.yin.ast;
+
+
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.value.Closure;
+import org.yinwang.yin.value.PrimFun;
+import org.yinwang.yin.value.Value;
+
+
+/**
+ * End of a dispatch chain. Specializes the call site on a miss.
+ */
+public class UninitializedDispatch extends Dispatch {
+
+    // maximum number of cached callees before a call site goes megamorphic
+    public static final int MAX_CACHED = 4;
+
+
+    @Override
+    public Value call(Call call, Value callee, Frame f) {
+        int cached = call.dispatch instanceof ClosureDispatch ? ((ClosureDispatch) call.dispatch).depth : 0;
+
+        if (callee instanceof Closure && cached < MAX_CACHED) {
+            Fun fun = ((Closure) callee).fun;
+            call.dispatch = new ClosureDispatch(fun, ParamBinding.create(call, fun), call.dispatch, cached + 1);
+        } else if (callee instanceof PrimFun && cached == 0) {
+            call.dispatch = new PrimitiveDispatch((PrimFun) callee);
+        } else {
+            call.dispatch = new GenericDispatch();
+        }
+        return call.dispatch.call(call, callee, f);
+    }
+
+}
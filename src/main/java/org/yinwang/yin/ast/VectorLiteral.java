@@ -1,6 +1,9 @@
 package org.yinwang.yin.ast;
 
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.LexicalScope;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.parser.LineIndex;
 import org.yinwang.yin.value.Value;
 import org.yinwang.yin.value.Vector;
 
@@ -11,15 +14,21 @@ public class VectorLiteral extends Node {
     public List<Node> elements;
 
 
-    public VectorLiteral(List<Node> elements, String file, int start, int end, int line, int col) {
-        super(file, start, end, line, col);
+    public VectorLiteral(List<Node> elements, String file, int start, int end, LineIndex lines) {
+        super(file, start, end, lines);
         this.elements = elements;
     }
 
 
     @Override
-    public Value interp(Scope s) {
-        return new Vector(interpList(elements, s));
+    public Value interp(Frame f) {
+        return new Vector(interpList(elements, f));
+    }
+
+
+    @Override
+    public void resolve(LexicalScope s) {
+        resolveList(elements, s);
     }
 
 
@@ -0,0 +1,16 @@
+package org.yinwang.yin.jit;
+
+
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.value.Value;
+
+
+/**
+ * Body of a function, or the main program, compiled to a JVM class.
+ * run is given the frame with the parameters already bound.
+ */
+public interface CompiledCode {
+
+    Value run(Frame f);
+
+}
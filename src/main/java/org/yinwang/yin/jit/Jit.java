@@ -0,0 +1,401 @@
+package org.yinwang.yin.jit;
+
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.Scope;
+import org.yinwang.yin.Util;
+import org.yinwang.yin.ast.*;
+import org.yinwang.yin.value.Value;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.objectweb.asm.Opcodes.*;
+
+
+/**
+ * Compile function bodies into JVM classes implementing CompiledCode, so
+ * that HotSpot can compile Yin functions like Java methods. Generated code
+ * uses the same Frame layout as the interpreter, and forms it doesn't
+ * handle are delegated to Node.interp.
+ */
+public class Jit {
+
+    static final String FRAME = Type.getInternalName(Frame.class);
+    static final String NODE = Type.getInternalName(Node.class);
+    static final String VALUE = Type.getInternalName(Value.class);
+    static final String CALL = Type.getInternalName(Call.class);
+    static final String NAME = Type.getInternalName(Name.class);
+    static final String BLOCK = Type.getInternalName(Block.class);
+    static final String RUNTIME = Type.getInternalName(JitRuntime.class);
+    static final String COMPILED = Type.getInternalName(CompiledCode.class);
+    static final String BINARY_DESC = "(L" + VALUE + ";L" + VALUE + ";L" + VALUE + ";L" + CALL + ";)L" + VALUE + ";";
+
+    // primitives with an integer fast path in JitRuntime
+    static final Map<String, String> BINARY = new HashMap<>();
+
+
+    static {
+        BINARY.put("+", "add");
+        BINARY.put("-", "sub");
+        BINARY.put("*", "mult");
+        BINARY.put("<", "lt");
+        BINARY.put("<=", "lte");
+        BINARY.put(">", "gt");
+        BINARY.put(">=", "gte");
+        BINARY.put("=", "eq");
+    }
+
+
+    static int counter = 0;
+
+    String className;
+    MethodVisitor mv;
+    List<Node> nodes = new ArrayList<>();
+    List<Value> constants = new ArrayList<>();
+    List<Integer> frames = new ArrayList<>();     // locals holding the frames of enclosing blocks
+    int nextLocal = 2;
+
+
+    /**
+     * Compile every function in a resolved program, then the program itself
+     */
+    public static CompiledCode compileProgram(Node program) {
+        compileFunctions(program);
+        CompiledCode code = new Jit().compile(program);
+        return code != null ? code : program::interp;
+    }
+
+
+    static void compileFunctions(Node node) {
+        if (node instanceof Fun) {
+            Fun fun = (Fun) node;
+            if (fun.propertyForm != null) {
+                compileFunctions(fun.propertyForm);
+            }
+            compileFunctions(fun.body);
+            fun.code = new Jit().compile(fun.body);
+        } else if (node instanceof Block) {
+            for (Node s : ((Block) node).statements) {
+                compileFunctions(s);
+            }
+        } else if (node instanceof If) {
+            compileFunctions(((If) node).test);
+            compileFunctions(((If) node).then);
+            compileFunctions(((If) node).orelse);
+        } else if (node instanceof Def) {
+            compileFunctions(((Def) node).value);
+        } else if (node instanceof Assign) {
+            compileFunctions(((Assign) node).value);
+        } else if (node instanceof Call) {
+            compileFunctions(((Call) node).op);
+            for (Node arg : ((Call) node).args.positional) {
+                compileFunctions(arg);
+            }
+            for (Node arg : ((Call) node).args.keywords.values()) {
+                compileFunctions(arg);
+            }
+        } else if (node instanceof RecordDef) {
+            compileFunctions(((RecordDef) node).propertyForm);
+        } else if (node instanceof RecordLiteral) {
+            for (Node v : ((RecordLiteral) node).map.values()) {
+                compileFunctions(v);
+            }
+        } else if (node instanceof VectorLiteral) {
+            for (Node v : ((VectorLiteral) node).elements) {
+                compileFunctions(v);
+            }
+        } else if (node instanceof Subscript) {
+            compileFunctions(((Subscript) node).value);
+            compileFunctions(((Subscript) node).index);
+        } else if (node instanceof Attr) {
+            compileFunctions(((Attr) node).value);
+        }
+    }
+
+
+    static void compileFunctions(Scope propertyForm) {
+        for (String field : propertyForm.keySet()) {
+            for (Object v : propertyForm.lookupAllProps(field).values()) {
+                compileFunctions((Node) v);
+            }
+        }
+    }
+
+
+    /**
+     * Generate and load a class whose run method evaluates body, or return
+     * null if the method would be over the JVM's limit of 64 KB, so that
+     * body is left to the interpreter
+     */
+    CompiledCode compile(Node body) {
+        className = "org/yinwang/yin/jit/Generated$" + (counter++);
+
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, "java/lang/Object", new String[]{COMPILED});
+        cw.visitField(ACC_FINAL, "nodes", "[L" + NODE + ";", null, null).visitEnd();
+        cw.visitField(ACC_FINAL, "constants", "[L" + VALUE + ";", null, null).visitEnd();
+
+        MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "([L" + NODE + ";[L" + VALUE + ";)V", null, null);
+        init.visitCode();
+        init.visitVarInsn(ALOAD, 0);
+        init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        init.visitVarInsn(ALOAD, 0);
+        init.visitVarInsn(ALOAD, 1);
+        init.visitFieldInsn(PUTFIELD, className, "nodes", "[L" + NODE + ";");
+        init.visitVarInsn(ALOAD, 0);
+        init.visitVarInsn(ALOAD, 2);
+        init.visitFieldInsn(PUTFIELD, className, "constants", "[L" + VALUE + ";");
+        init.visitInsn(RETURN);
+        init.visitMaxs(0, 0);
+        init.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "run", "(L" + FRAME + ";)L" + VALUE + ";", null, null);
+        mv.visitCode();
+        frames.add(1);
+        compileNode(body);
+        mv.visitInsn(ARETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+
+        byte[] bytes;
+        try {
+            bytes = cw.toByteArray();
+        } catch (MethodTooLargeException e) {
+            return null;
+        }
+
+        String binaryName = className.replace('/', '.');
+        Class<?> c = new JitClassLoader().define(binaryName, bytes);
+        try {
+            return (CompiledCode) c.getConstructor(Node[].class, Value[].class).newInstance(
+                    nodes.toArray(new Node[nodes.size()]),
+                    constants.toArray(new Value[constants.size()]));
+        } catch (ReflectiveOperationException e) {
+            Util.abort("failed to load generated class " + binaryName + ": " + e);
+            return null;
+        }
+    }
+
+
+    /**
+     * Emit code which leaves the value of node on the stack
+     */
+    void compileNode(Node node) {
+        if (node instanceof IntNum || node instanceof BigInt || node instanceof FloatNum || node instanceof Str) {
+            // literals don't look at the frame
+            loadConstant(node.interp(null));
+        } else if (node instanceof Call && ((Call) node).constant != null) {
+            loadConstant(((Call) node).constant);
+        } else if (node instanceof Name) {
+            compileName((Name) node);
+        } else if (node instanceof Block) {
+            compileBlock((Block) node);
+        } else if (node instanceof If) {
+            compileIf((If) node);
+        } else if (node instanceof Def && ((Def) node).pattern instanceof Name) {
+            compileDef((Def) node);
+        } else if (node instanceof Assign && ((Assign) node).pattern instanceof Name
+                && ((Name) ((Assign) node).pattern).depth >= 0)
+        {
+            compileAssign((Assign) node);
+        } else if (node instanceof Call && ((Call) node).args.keywords.isEmpty()) {
+            compileCall((Call) node);
+        } else {
+            compileFallback(node);
+        }
+    }
+
+
+    void compileName(Name name) {
+        if (name.depth < 0) {
+            // unbound variable
+            mv.visitInsn(ACONST_NULL);
+            return;
+        }
+
+        if (name.capture >= 0) {
+            loadFrame(0);
+            mv.visitFieldInsn(GETFIELD, FRAME, "captured", "[Ljava/lang/Object;");
+            pushInt(name.capture);
+        } else {
+            loadFrame(name.depth);
+            mv.visitFieldInsn(GETFIELD, FRAME, "slots", "[Ljava/lang/Object;");
+            pushInt(name.slot);
+        }
+        mv.visitInsn(AALOAD);
+        mv.visitMethodInsn(INVOKESTATIC, FRAME, "deref", "(Ljava/lang/Object;)L" + VALUE + ";", false);
+    }
+
+
+    void compileBlock(Block block) {
+        if (!block.scoped) {
+            compileStatements(block.statements);
+            return;
+        }
+
+        int local = nextLocal++;
+        mv.visitTypeInsn(NEW, FRAME);
+        mv.visitInsn(DUP);
+        loadFrame(0);
+        pushInt(block.frameSize);
+        mv.visitMethodInsn(INVOKESPECIAL, FRAME, "<init>", "(L" + FRAME + ";I)V", false);
+        mv.visitVarInsn(ASTORE, local);
+        frames.add(local);
+        if (block.cellSlots.length > 0) {
+            loadFrame(0);
+            loadNode(block, BLOCK);
+            mv.visitFieldInsn(GETFIELD, BLOCK, "cellSlots", "[I");
+            mv.visitMethodInsn(INVOKEVIRTUAL, FRAME, "box", "([I)V", false);
+        }
+
+        compileStatements(block.statements);
+        frames.remove(frames.size() - 1);
+    }
+
+
+    void compileStatements(List<Node> statements) {
+        for (int i = 0; i < statements.size(); i++) {
+            compileNode(statements.get(i));
+            if (i < statements.size() - 1) {
+                mv.visitInsn(POP);
+            }
+        }
+    }
+
+
+    void compileIf(If node) {
+        Label orelse = new Label();
+        Label end = new Label();
+        compileNode(node.test);
+        mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "test", "(L" + VALUE + ";)Z", false);
+        mv.visitJumpInsn(IFEQ, orelse);
+        compileNode(node.then);
+        mv.visitJumpInsn(GOTO, end);
+        mv.visitLabel(orelse);
+        compileNode(node.orelse);
+        mv.visitLabel(end);
+    }
+
+
+    void compileDef(Def def) {
+        loadFrame(0);
+        compileNode(def.value);
+        loadNode(def.pattern, NAME);
+        mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "define",
+                "(L" + FRAME + ";L" + VALUE + ";L" + NAME + ";)V", false);
+        mv.visitFieldInsn(GETSTATIC, VALUE, "VOID", "L" + VALUE + ";");
+    }
+
+
+    void compileAssign(Assign assign) {
+        loadFrame(0);
+        compileNode(assign.value);
+        loadNode(assign.pattern, NAME);
+        mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "assign",
+                "(L" + FRAME + ";L" + VALUE + ";L" + NAME + ";)V", false);
+        mv.visitFieldInsn(GETSTATIC, VALUE, "VOID", "L" + VALUE + ";");
+    }
+
+
+    void compileCall(Call call) {
+        List<Node> args = call.args.positional;
+        compileNode(call.op);
+
+        if (call.op instanceof Name && args.size() == 2 && BINARY.containsKey(((Name) call.op).id)) {
+            compileNode(args.get(0));
+            compileNode(args.get(1));
+            loadNode(call, CALL);
+            mv.visitMethodInsn(INVOKESTATIC, RUNTIME, BINARY.get(((Name) call.op).id), BINARY_DESC, false);
+        } else if (args.size() == 1) {
+            compileNode(args.get(0));
+            loadNode(call, CALL);
+            mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "call1",
+                    "(L" + VALUE + ";L" + VALUE + ";L" + CALL + ";)L" + VALUE + ";", false);
+        } else if (args.size() == 2) {
+            compileNode(args.get(0));
+            compileNode(args.get(1));
+            loadNode(call, CALL);
+            mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "call2", BINARY_DESC, false);
+        } else {
+            pushInt(args.size());
+            mv.visitTypeInsn(ANEWARRAY, VALUE);
+            for (int i = 0; i < args.size(); i++) {
+                mv.visitInsn(DUP);
+                pushInt(i);
+                compileNode(args.get(i));
+                mv.visitInsn(AASTORE);
+            }
+            loadNode(call, CALL);
+            mv.visitMethodInsn(INVOKESTATIC, RUNTIME, "call",
+                    "(L" + VALUE + ";[L" + VALUE + ";L" + CALL + ";)L" + VALUE + ";", false);
+        }
+    }
+
+
+    void compileFallback(Node node) {
+        loadNode(node, NODE);
+        loadFrame(0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, NODE, "interp", "(L" + FRAME + ";)L" + VALUE + ";", false);
+    }
+
+
+    /**
+     * Load the frame depth levels out. Frames of blocks in this unit are in
+     * locals, the ones further out are reached through Frame.parent.
+     */
+    void loadFrame(int depth) {
+        int n = frames.size();
+        if (depth < n) {
+            mv.visitVarInsn(ALOAD, frames.get(n - 1 - depth));
+        } else {
+            mv.visitVarInsn(ALOAD, frames.get(0));
+            for (int i = 0; i < depth - n + 1; i++) {
+                mv.visitFieldInsn(GETFIELD, FRAME, "parent", "L" + FRAME + ";");
+            }
+        }
+    }
+
+
+    void loadNode(Node node, String type) {
+        nodes.add(node);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, "nodes", "[L" + NODE + ";");
+        pushInt(nodes.size() - 1);
+        mv.visitInsn(AALOAD);
+        if (!type.equals(NODE)) {
+            mv.visitTypeInsn(CHECKCAST, type);
+        }
+    }
+
+
+    void loadConstant(Value v) {
+        constants.add(v);
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitFieldInsn(GETFIELD, className, "constants", "[L" + VALUE + ";");
+        pushInt(constants.size() - 1);
+        mv.visitInsn(AALOAD);
+    }
+
+
+    void pushInt(int n) {
+        if (n >= -1 && n <= 5) {
+            mv.visitInsn(ICONST_0 + n);
+        } else if (n >= Byte.MIN_VALUE && n <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, n);
+        } else if (n >= Short.MIN_VALUE && n <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, n);
+        } else {
+            mv.visitLdcInsn(n);
+        }
+    }
+
+}
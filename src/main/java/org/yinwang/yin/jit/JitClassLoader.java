@@ -0,0 +1,19 @@
+package org.yinwang.yin.jit;
+
+
+/**
+ * Loader of generated classes. Every class gets its own loader, so that it
+ * can be unloaded together with its function.
+ */
+public class JitClassLoader extends ClassLoader {
+
+    public JitClassLoader() {
+        super(JitClassLoader.class.getClassLoader());
+    }
+
+
+    public Class<?> define(String name, byte[] bytes) {
+        return defineClass(name, bytes, 0, bytes.length);
+    }
+
+}
@@ -0,0 +1,178 @@
+package org.yinwang.yin.jit;
+
+
+import org.yinwang.yin.Frame;
+import org.yinwang.yin.Util;
+import org.yinwang.yin.ast.Call;
+import org.yinwang.yin.ast.Declare;
+import org.yinwang.yin.ast.Name;
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.*;
+import org.yinwang.yin.value.primitives.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Operations called from generated code. They are small static methods, so
+ * HotSpot inlines them into the generated methods.
+ */
+public class JitRuntime {
+
+    public static Value call(Value callee, Value[] args, Call call) {
+        if (callee instanceof Closure) {
+            Closure closure = (Closure) callee;
+            List<Name> params = closure.fun.params;
+            if (args.length > params.size()) {
+                Util.abort(call, "calling function with too many arguments. expected: " + params.size()
+                        + " actual: " + args.length);
+            }
+
+            Frame funFrame = new Frame(closure);
+            for (int i = 0; i < args.length; i++) {
+                funFrame.slots[params.get(i).slot] = args[i];
+            }
+            if (args.length < params.size() && closure.properties != null) {
+                Declare.mergeDefault(closure.properties, params, funFrame);
+            }
+            if (call.tail) {
+                return new TailCall(closure, funFrame);
+            } else {
+                return closure.invoke(funFrame);
+            }
+        } else if (callee instanceof RecordType) {
+            // keyword calls are not compiled, so there are only the defaults
+            return ((RecordType) callee).instantiate();
+        } else if (callee instanceof PrimFun) {
+            return ((PrimFun) callee).apply(new ArrayList<>(Arrays.asList(args)), call);
+        } else {
+            Util.abort(call.op, "calling non-function: " + callee);
+            return Value.VOID;
+        }
+    }
+
+
+    // calls of one or two arguments, which reach primitives through their
+    // fixed-arity entry points without building an argument list
+
+
+    public static Value call1(Value callee, Value a, Call call) {
+        if (callee instanceof PrimFun) {
+            return ((PrimFun) callee).apply1(a, call);
+        } else {
+            return call(callee, new Value[]{a}, call);
+        }
+    }
+
+
+    public static Value call2(Value callee, Value a, Value b, Call call) {
+        if (callee instanceof PrimFun) {
+            return ((PrimFun) callee).apply2(a, b, call);
+        } else {
+            return call(callee, new Value[]{a, b}, call);
+        }
+    }
+
+
+    public static void define(Frame f, Value value, Name name) {
+        if (name.interp(f) != null) {
+            Util.abort(name, "trying to redefine name: " + name.id);
+        }
+        name.set(f, value);
+    }
+
+
+    public static void assign(Frame f, Value value, Name name) {
+        if (name.interp(f) == null) {
+            Util.abort(name, "assigned name was not defined: " + name.id);
+        }
+        name.set(f, value);
+    }
+
+
+    public static boolean test(Value v) {
+        return ((BoolValue) v).value;
+    }
+
+
+    // integer fast paths of binary primitives, anything else takes the full call
+
+
+    public static Value add(Value callee, Value a, Value b, Call call) {
+        if (callee instanceof Add && a instanceof IntValue && b instanceof IntValue) {
+            try {
+                return IntValue.of(Math.addExact(((IntValue) a).value, ((IntValue) b).value));
+            } catch (ArithmeticException e) {
+                // overflow, the primitive promotes to a big integer
+            }
+        }
+        return call2(callee, a, b, call);
+    }
+
+
+    public static Value sub(Value callee, Value a, Value b, Call call) {
+        if (callee instanceof Sub && a instanceof IntValue && b instanceof IntValue) {
+            try {
+                return IntValue.of(Math.subtractExact(((IntValue) a).value, ((IntValue) b).value));
+            } catch (ArithmeticException e) {
+                // overflow, the primitive promotes to a big integer
+            }
+        }
+        return call2(callee, a, b, call);
+    }
+
+
+    public static Value mult(Value callee, Value a, Value b, Call call) {
+        if (callee instanceof Mult && a instanceof IntValue && b instanceof IntValue) {
+            try {
+                return IntValue.of(Math.multiplyExact(((IntValue) a).value, ((IntValue) b).value));
+            } catch (ArithmeticException e) {
+                // overflow, the primitive promotes to a big integer
+            }
+        }
+        return call2(callee, a, b, call);
+    }
+
+
+    public static Value lt(Value callee, Value a, Value b, Call call) {
+        if (callee instanceof Lt && a instanceof IntValue && b instanceof IntValue) {
+            return BoolValue.of(((IntValue) a).value < ((IntValue) b).value);
+        }
+        return call2(callee, a, b, call);
+    }
+
+
+    public static Value lte(Value callee, Value a, Value b, Call call) {
+        if (callee instanceof LtE && a instanceof IntValue && b instanceof IntValue) {
+            return BoolValue.of(((IntValue) a).value <= ((IntValue) b).value);
+        }
+        return call2(callee, a, b, call);
+    }
+
+
+    public static Value gt(Value callee, Value a, Value b, Call call) {
+        if (callee instanceof Gt && a instanceof IntValue && b instanceof IntValue) {
+            return BoolValue.of(((IntValue) a).value > ((IntValue) b).value);
+        }
+        return call2(callee, a, b, call);
+    }
+
+
+    public static Value gte(Value callee, Value a, Value b, Call call) {
+        if (callee instanceof GtE && a instanceof IntValue && b instanceof IntValue) {
+            return BoolValue.of(((IntValue) a).value >= ((IntValue) b).value);
+        }
+        return call2(callee, a, b, call);
+    }
+
+
+    public static Value eq(Value callee, Value a, Value b, Call call) {
+        if (callee instanceof Eq && a instanceof IntValue && b instanceof IntValue) {
+            return BoolValue.of(((IntValue) a).value == ((IntValue) b).value);
+        }
+        return call2(callee, a, b, call);
+    }
+
+}
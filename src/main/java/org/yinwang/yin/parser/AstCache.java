@@ -0,0 +1,537 @@
+package org.yinwang.yin.parser;
+
+
+import org.yinwang.yin.Scope;
+import org.yinwang.yin.Util;
+import org.yinwang.yin.ast.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+
+/**
+ * Cache of parse trees, so that a file which hasn't changed since it was
+ * last parsed is read back instead of parsed again. The cache is off
+ * unless the property yin.cache names its directory, as in
+ *
+ *     java -Dyin.cache=$HOME/.cache/yin org.yinwang.yin.Interpreter file.yin
+ *
+ * A tree is stored in binary in that directory, in a file named by the
+ * SHA-256 of the file's path. The entry starts with the SHA-256 of VERSION,
+ * TREE, the path and the content, and is only used if that matches, so an
+ * entry written by a parser which made other trees is parsed again. Each source file has
+ * one entry, which is replaced when the file is parsed with new content,
+ * so the cache doesn't grow with every edit. Strings, like names and file
+ * paths, are stored once in a table and referred to by index, and so are
+ * the offsets where the lines of the text start, which the loaded nodes
+ * share as their LineIndex.
+ *
+ * The cache only holds what the parser makes. Anything resolve or the
+ * interpreter adds to the nodes later is made again on each run.
+ */
+public class AstCache {
+
+    static final int MAGIC = 0x59414354;    // "YACT"
+    static final int VERSION = 3;           // change when the format of entries changes
+    static final int TREE = 2;              // change when the parser makes other trees for the same text
+
+    // node tags
+    static final int NULL = 0;
+    static final int BLOCK = 1;
+    static final int IF = 2;
+    static final int DEF = 3;
+    static final int ASSIGN = 4;
+    static final int DECLARE = 5;
+    static final int FUN = 6;
+    static final int RECORD_DEF = 7;
+    static final int CALL = 8;
+    static final int NAME = 9;
+    static final int KEYWORD = 10;
+    static final int INT = 11;
+    static final int BIG_INT = 12;
+    static final int FLOAT = 13;
+    static final int STR = 14;
+    static final int VECTOR = 15;
+    static final int RECORD = 16;
+    static final int SUBSCRIPT = 17;
+    static final int ATTR = 18;
+
+    public String file;
+    public byte[] key;
+    public Path path;
+
+    // strings of the tree being written or read, and their indexes
+    List<String> strings = new ArrayList<>();
+    Map<String, Integer> stringIndex = new HashMap<>();
+
+    // lines of the tree being written or read
+    LineIndex lines;
+
+    // start of the last node written or read. Nodes are stored in the order
+    // of the text, so the differences to it are small.
+    int lastStart;
+
+    // entry being read
+    byte[] input;
+    int pos;
+
+
+    AstCache(String file, byte[] key, Path path) {
+        this.file = file;
+        this.key = key;
+        this.path = path;
+    }
+
+
+    /**
+     * The cache entry of file with the content text, or null if the cache
+     * is off. The key is hashed from the text which is parsed, not
+     * from another read of the file, so that a file which changes in
+     * between can't have its new tree stored under its old content.
+     */
+    public static AstCache open(String file, CharSequence text) {
+        String dir = System.getProperty("yin.cache");
+        if (dir == null || dir.isEmpty()) {
+            return null;
+        }
+
+        try {
+            byte[] unified = Util.unifyPath(file).getBytes(StandardCharsets.UTF_8);
+            String name = hex(MessageDigest.getInstance("SHA-256").digest(unified));
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(ByteBuffer.allocate(8).putInt(VERSION).putInt(TREE).array());
+            digest.update(unified);
+            digest.update((byte) 0);
+            if (text instanceof MappedSource) {
+                // the mapping the text is decoded from
+                digest.update(((MappedSource) text).bytes.duplicate());
+            } else {
+                digest.update(text.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] key = digest.digest();
+            return new AstCache(file, key, Paths.get(dir, name + ".ast"));
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+
+    static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+
+    /**
+     * The stored tree, or null if there is none or it can't be read
+     */
+    public Node load() {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            input = Files.readAllBytes(path);
+            pos = 0;
+            if (readFixedInt() != MAGIC || readFixedInt() != VERSION) {
+                return null;
+            }
+            for (byte b : key) {
+                if (input[pos++] != b) {
+                    return null;
+                }
+            }
+
+            strings.clear();
+            int n = readInt();
+            for (int i = 0; i < n; i++) {
+                strings.add(readString());
+            }
+            int count = readInt();
+            if (count < 1) {
+                return null;
+            }
+            int[] starts = new int[count];
+            for (int i = 1; i < count; i++) {
+                starts[i] = starts[i - 1] + readInt();
+            }
+            lines = new LineIndex(starts, count);
+            lastStart = 0;
+            return readNode();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            input = null;
+            lines = null;
+        }
+    }
+
+
+    /**
+     * Store program as the tree of the file. The cache is only a shortcut,
+     * so failing to write it is not an error.
+     */
+    public void store(Node program) {
+        strings.clear();
+        stringIndex.clear();
+        lines = program.lines;
+        lastStart = 0;
+        ByteArrayOutputStream tree = new ByteArrayOutputStream();
+        try {
+            writeNode(new DataOutputStream(tree), program);
+        } catch (IOException | IllegalArgumentException e) {
+            return;
+        } finally {
+            lines = null;
+        }
+        int[] starts = program.lines == null ? new int[1] : program.lines.starts;
+        int count = program.lines == null ? 1 : program.lines.count;
+
+        Path tmp = null;
+        try {
+            Files.createDirectories(path.getParent());
+            tmp = Files.createTempFile(path.getParent(), "ast", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.write(key);
+                writeInt(out, strings.size());
+                for (String s : strings) {
+                    writeString(out, s);
+                }
+                writeInt(out, count);
+                for (int i = 1; i < count; i++) {
+                    writeInt(out, starts[i] - starts[i - 1]);
+                }
+                tree.writeTo(out);
+            }
+            // another run may read the entry at any time, so it appears whole
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e1) {
+                    // nothing more to do
+                }
+            }
+        }
+    }
+
+
+    void writeNode(DataOutputStream out, Node node) throws IOException {
+        if (node == null) {
+            writeInt(out, NULL);
+            return;
+        }
+
+        if (node instanceof Block) {
+            writeHeader(out, BLOCK, node);
+            writeNodes(out, ((Block) node).statements);
+        } else if (node instanceof If) {
+            writeHeader(out, IF, node);
+            writeNode(out, ((If) node).test);
+            writeNode(out, ((If) node).then);
+            writeNode(out, ((If) node).orelse);
+        } else if (node instanceof Def) {
+            writeHeader(out, DEF, node);
+            writeNode(out, ((Def) node).pattern);
+            writeNode(out, ((Def) node).value);
+        } else if (node instanceof Assign) {
+            writeHeader(out, ASSIGN, node);
+            writeNode(out, ((Assign) node).pattern);
+            writeNode(out, ((Assign) node).value);
+        } else if (node instanceof Declare) {
+            writeHeader(out, DECLARE, node);
+            writeScope(out, ((Declare) node).propertyForm);
+        } else if (node instanceof Fun) {
+            writeHeader(out, FUN, node);
+            writeNodes(out, ((Fun) node).params);
+            writeScope(out, ((Fun) node).propertyForm);
+            writeNode(out, ((Fun) node).body);
+        } else if (node instanceof RecordDef) {
+            writeHeader(out, RECORD_DEF, node);
+            writeNode(out, ((RecordDef) node).name);
+            writeNodes(out, ((RecordDef) node).parents);
+            writeScope(out, ((RecordDef) node).propertyForm);
+        } else if (node instanceof Call) {
+            writeHeader(out, CALL, node);
+            writeNode(out, ((Call) node).op);
+            writeNodes(out, ((Call) node).args.elements);
+        } else if (node instanceof Name) {
+            writeHeader(out, NAME, node);
+            writeStringRef(out, ((Name) node).id);
+        } else if (node instanceof Keyword) {
+            writeHeader(out, KEYWORD, node);
+            writeStringRef(out, ((Keyword) node).id);
+        } else if (node instanceof IntNum) {
+            writeHeader(out, INT, node);
+            writeStringRef(out, ((IntNum) node).content);
+        } else if (node instanceof BigInt) {
+            writeHeader(out, BIG_INT, node);
+            writeStringRef(out, ((BigInt) node).content);
+        } else if (node instanceof FloatNum) {
+            writeHeader(out, FLOAT, node);
+            writeStringRef(out, ((FloatNum) node).content);
+        } else if (node instanceof Str) {
+            writeHeader(out, STR, node);
+            writeStringRef(out, ((Str) node).value);
+        } else if (node instanceof VectorLiteral) {
+            writeHeader(out, VECTOR, node);
+            writeNodes(out, ((VectorLiteral) node).elements);
+        } else if (node instanceof RecordLiteral) {
+            writeHeader(out, RECORD, node);
+            Map<String, Node> map = ((RecordLiteral) node).map;
+            writeInt(out, map.size());
+            for (Map.Entry<String, Node> e : map.entrySet()) {
+                writeStringRef(out, e.getKey());
+                writeNode(out, e.getValue());
+            }
+        } else if (node instanceof Subscript) {
+            writeHeader(out, SUBSCRIPT, node);
+            writeNode(out, ((Subscript) node).value);
+            writeNode(out, ((Subscript) node).index);
+        } else if (node instanceof Attr) {
+            writeHeader(out, ATTR, node);
+            writeNode(out, ((Attr) node).value);
+            writeNode(out, ((Attr) node).attr);
+        } else {
+            throw new IllegalArgumentException("node can't be cached: " + node.getClass().getSimpleName());
+        }
+    }
+
+
+    void writeHeader(DataOutputStream out, int tag, Node node) throws IOException {
+        writeInt(out, tag);
+        writeStringRef(out, node.file);
+        writeInt(out, zigzag(node.start - lastStart));
+        writeInt(out, zigzag(node.end - node.start));
+        if (node.lines != null && node.lines != lines) {
+            throw new IllegalArgumentException("node of another text can't be cached");
+        }
+        out.writeBoolean(node.lines != null);
+        lastStart = node.start;
+    }
+
+
+    // a null list is written as -1
+    void writeNodes(DataOutputStream out, List<? extends Node> nodes) throws IOException {
+        if (nodes == null) {
+            writeInt(out, -1);
+        } else {
+            writeInt(out, nodes.size());
+            for (Node node : nodes) {
+                writeNode(out, node);
+            }
+        }
+    }
+
+
+    // a property form, whose properties are all nodes after parsing
+    void writeScope(DataOutputStream out, Scope scope) throws IOException {
+        if (scope == null) {
+            writeInt(out, -1);
+            return;
+        }
+        writeInt(out, scope.keySet().size());
+        for (String field : scope.keySet()) {
+            writeStringRef(out, field);
+            Map<String, Object> props = scope.lookupAllProps(field);
+            writeInt(out, props.size());
+            for (Map.Entry<String, Object> e : props.entrySet()) {
+                if (!(e.getValue() instanceof Node)) {
+                    throw new IllegalArgumentException("property can't be cached: " + e.getValue());
+                }
+                writeStringRef(out, e.getKey());
+                writeNode(out, (Node) e.getValue());
+            }
+        }
+    }
+
+
+    Node readNode() throws IOException {
+        int tag = readInt();
+        if (tag == NULL) {
+            return null;
+        }
+
+        String file = readStringRef();
+        int start = lastStart + unzigzag(readInt());
+        int end = start + unzigzag(readInt());
+        LineIndex lines = input[pos++] != 0 ? this.lines : null;
+        lastStart = start;
+
+        switch (tag) {
+            case BLOCK:
+                return new Block(readNodes(), file, start, end, lines);
+            case IF:
+                return new If(readNode(), readNode(), readNode(), file, start, end, lines);
+            case DEF:
+                return new Def(readNode(), readNode(), file, start, end, lines);
+            case ASSIGN:
+                return new Assign(readNode(), readNode(), file, start, end, lines);
+            case DECLARE:
+                return new Declare(readScope(), file, start, end, lines);
+            case FUN:
+                return new Fun(this.<Name>readNodes(), readScope(), readNode(), file, start, end, lines);
+            case RECORD_DEF:
+                return new RecordDef((Name) readNode(), this.<Name>readNodes(), readScope(),
+                        file, start, end, lines);
+            case CALL:
+                return new Call(readNode(), new Argument(readNodes()), file, start, end, lines);
+            case NAME:
+                return new Name(readStringRef(), file, start, end, lines);
+            case KEYWORD:
+                return new Keyword(readStringRef(), file, start, end, lines);
+            case INT:
+                return new IntNum(readStringRef(), file, start, end, lines);
+            case BIG_INT:
+                return new BigInt(readStringRef(), file, start, end, lines);
+            case FLOAT:
+                return new FloatNum(readStringRef(), file, start, end, lines);
+            case STR:
+                return new Str(readStringRef(), file, start, end, lines);
+            case VECTOR:
+                return new VectorLiteral(readNodes(), file, start, end, lines);
+            case RECORD: {
+                RecordLiteral record = new RecordLiteral(new ArrayList<Node>(), file, start, end, lines);
+                int n = readInt();
+                for (int i = 0; i < n; i++) {
+                    String field = readStringRef();
+                    record.map.put(field, readNode());
+                }
+                return record;
+            }
+            case SUBSCRIPT:
+                return new Subscript(readNode(), readNode(), file, start, end, lines);
+            case ATTR:
+                return new Attr(readNode(), (Name) readNode(), file, start, end, lines);
+            default:
+                throw new IOException("bad node tag: " + tag);
+        }
+    }
+
+
+    @SuppressWarnings("unchecked")
+    <T extends Node> List<T> readNodes() throws IOException {
+        int n = readInt();
+        if (n < 0) {
+            return null;
+        }
+        List<T> nodes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            nodes.add((T) readNode());
+        }
+        return nodes;
+    }
+
+
+    Scope readScope() throws IOException {
+        int n = readInt();
+        if (n < 0) {
+            return null;
+        }
+        Scope scope = new Scope();
+        for (int i = 0; i < n; i++) {
+            String field = readStringRef();
+            Map<String, Object> props = new LinkedHashMap<>();
+            int m = readInt();
+            for (int j = 0; j < m; j++) {
+                String key = readStringRef();
+                props.put(key, readNode());
+            }
+            scope.putProperties(field, props);
+        }
+        return scope;
+    }
+
+
+    void writeStringRef(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeInt(out, 0);
+            return;
+        }
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            index = strings.size();
+            strings.add(s);
+            stringIndex.put(s, index);
+        }
+        writeInt(out, index + 1);
+    }
+
+
+    String readStringRef() throws IOException {
+        int index = readInt();
+        return index == 0 ? null : strings.get(index - 1);
+    }
+
+
+    // strings in the table are UTF-8 with their length first, without the
+    // 64K limit of writeUTF
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+
+    String readString() throws IOException {
+        int n = readInt();
+        String s = new String(input, pos, n, StandardCharsets.UTF_8);
+        pos += n;
+        return s;
+    }
+
+
+    // ints take 1 to 5 bytes, 7 bits in each. -1 is written as the
+    // unsigned 0xffffffff, and so takes 5.
+    static void writeInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7f) != 0) {
+            out.writeByte((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+
+    int readInt() throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = input[pos++];
+            v |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("bad varint");
+    }
+
+
+    int readFixedInt() {
+        int v = ((input[pos] & 0xff) << 24) | ((input[pos + 1] & 0xff) << 16)
+                | ((input[pos + 2] & 0xff) << 8) | (input[pos + 3] & 0xff);
+        pos += 4;
+        return v;
+    }
+
+
+    // differences may be negative, zigzag keeps small ones short either way
+    static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+
+    static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+}
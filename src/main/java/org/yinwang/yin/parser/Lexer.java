@@ -3,9 +3,13 @@ package org.yinwang.yin.parser;
 
 import org.jetbrains.annotations.Nullable;
 import org.yinwang.yin.Constants;
+import org.yinwang.yin.Symbol;
 import org.yinwang.yin.Util;
 import org.yinwang.yin.ast.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,69 +21,173 @@ import java.util.List;
 public class Lexer {
 
     public String file;
-    public String text;
+    public CharSequence text;
+    StringBuilder input;        // text, if it can be appended to
 
-    // current offset indicators
+    // current offset, its line and column are only computed for tokens
     public int offset;
-    public int line;
-    public int col;
+    public int limit;       // offset where the text to lex ends
+    public LineIndex lines;
 
+    static final long MAP_THRESHOLD = 1 << 24;      // files from this size on are memory-mapped
 
-    public Lexer(String file) {
-        this.file = Util.unifyPath(file);
-        this.text = Util.readFile(file);
-        this.offset = 0;
-        this.line = 0;
-        this.col = 0;
+    // classes of ASCII characters, as bits in charClass
+    static final int SPACE = 1;
+    static final int DIGIT = 2;
+    static final int DELIMITER = 4;
+    static final int IDENT = 8;         // part of a name or keyword
+    static final int NUMBER = 16;       // part of a number
+    static final byte[] charClass = new byte[128];
 
-        if (text == null) {
-            Util.abort("failed to read file: " + file);
-        }
 
+    static {
         Delimeter.addDelimiterPair(Constants.PAREN_BEGIN, Constants.PAREN_END);
         Delimeter.addDelimiterPair(Constants.SQUARE_BEGIN, Constants.SQUARE_END);
 
         Delimeter.addDelimiter(Constants.ATTRIBUTE_ACCESS);
+
+        for (char c = 0; c < charClass.length; c++) {
+            int k = 0;
+            if (Character.isWhitespace(c)) {
+                k |= SPACE;
+            }
+            if (Character.isDigit(c)) {
+                k |= DIGIT;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                k |= IDENT | NUMBER;
+            }
+            if (Constants.IDENT_CHARS.contains(c)) {
+                k |= IDENT;
+            }
+            if (c == '.' || c == '+' || c == '-') {
+                k |= NUMBER;
+            }
+            if (Delimeter.delims.contains(Character.toString(c))) {
+                k |= DELIMITER;
+            }
+            charClass[c] = (byte) k;
+        }
+    }
+
+
+    public Lexer(String file) {
+        this(file, readSource(file));
+    }
+
+
+    public Lexer(String file, CharSequence text) {
+        this.file = Util.unifyPath(file);
+        this.text = text;
+        this.offset = 0;
+        this.limit = text.length();
+        this.lines = new LineIndex(text);
+    }
+
+
+    /**
+     * Lexer for the part of text from start to limit, with lines being the
+     * LineIndex of all of text, so tokens get their place in the whole text
+     */
+    public Lexer(String file, CharSequence text, LineIndex lines, int start, int limit) {
+        this.file = Util.unifyPath(file);
+        this.text = text;
+        this.offset = start;
+        this.limit = limit;
+        this.lines = lines;
     }
 
-    public Lexer(StringBuffer buffer) {
+
+    /**
+     * Lexer over input which comes in pieces, see append
+     */
+    public Lexer() {
         this.file = null;
-        this.text = buffer.toString();
+        this.input = new StringBuilder();
+        this.text = input;
         this.offset = 0;
-        this.line = 0;
-        this.col = 0;
+        this.limit = 0;
+        this.lines = new LineIndex(text);
+    }
 
-        Delimeter.addDelimiterPair(Constants.PAREN_BEGIN, Constants.PAREN_END);
-        Delimeter.addDelimiterPair(Constants.SQUARE_BEGIN, Constants.SQUARE_END);
 
-        Delimeter.addDelimiter(Constants.ATTRIBUTE_ACCESS);
+    /**
+     * Add more input, for a lexer made by Lexer(). Tokens before the end
+     * of the old input are not read again.
+     */
+    public void append(String more) {
+        int from = input.length();
+        input.append(more);
+        limit = input.length();
+        lines.extend(input, from);
     }
 
-    public void forward() {
-        if (text.charAt(offset) == '\n') {
-            line++;
-            col = 0;
-            offset++;
-        } else {
-            col++;
-            offset++;
+
+    /**
+     * Text of file. Files of MAP_THRESHOLD bytes or more are memory-mapped,
+     * so that their text is never all in memory at once. Smaller files are
+     * read into a String, which is quicker to lex.
+     */
+    static CharSequence readSource(String file) {
+        try {
+            if (Files.size(Paths.get(file)) >= MAP_THRESHOLD) {
+                return new MappedSource(file);
+            }
+        } catch (IOException e) {
+            Util.abort("failed to read file: " + file);
+        }
+
+        String text = Util.readFile(file);
+        if (text == null) {
+            Util.abort("failed to read file: " + file);
         }
+        return text;
+    }
+
+
+    public void forward() {
+        offset++;
     }
 
 
     public void skip(int n) {
-        for (int i = 0; i < n; i++) {
-            forward();
+        offset += n;
+    }
+
+
+    // text is only a CharSequence, which has no startsWith, indexOf or substring
+    boolean startsWith(String s) {
+        if (offset + s.length() > limit) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (text.charAt(offset + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    int indexOf(char c, int from) {
+        for (int i = from; i < limit; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
         }
+        return -1;
+    }
+
+
+    String substring(int start, int end) {
+        return text.subSequence(start, end).toString();
     }
 
 
     public boolean skipSpaces() {
         boolean found = false;
 
-        while (offset < text.length() &&
-                Character.isWhitespace(text.charAt(offset)))
-        {
+        while (offset < limit && isSpace(text.charAt(offset))) {
             found = true;
             forward();
         }
@@ -90,16 +198,12 @@ public class Lexer {
     public boolean skipComments() {
         boolean found = false;
 
-        if (text.startsWith(Constants.LINE_COMMENT, offset)) {
+        if (startsWith(Constants.LINE_COMMENT)) {
             found = true;
 
             // skip to line end
-            while (offset < text.length() && text.charAt(offset) != '\n') {
-                forward();
-            }
-            if (offset < text.length()) {
-                forward();
-            }
+            int lineEnd = indexOf('\n', offset);
+            offset = lineEnd < 0 ? limit : lineEnd + 1;
         }
         return found;
     }
@@ -114,24 +218,35 @@ public class Lexer {
 
     public Node scanString() throws ParserException {
         int start = offset;
-        int startLine = line;
-        int startCol = col;
+        skipString();
+
+        int end = offset;
+        String content = substring(
+                start + Constants.STRING_START.length(),
+                end - Constants.STRING_END.length());
+
+        return new Str(content, file, start, end, lines);
+    }
+
+
+    void skipString() throws ParserException {
+        int start = offset;
         skip(Constants.STRING_START.length());    // skip quote mark
 
         while (true) {
             // detect runaway strings at end of file or at newline
-            if (offset >= text.length() || text.charAt(offset) == '\n') {
-                throw new ParserException("runaway string", startLine, startCol, offset);
+            if (offset >= limit || text.charAt(offset) == '\n') {
+                throw new ParserException("runaway string", lines.line(start), lines.col(start), offset);
             }
 
             // end of string
-            else if (text.startsWith(Constants.STRING_END, offset)) {
+            else if (startsWith(Constants.STRING_END)) {
                 skip(Constants.STRING_END.length());    // skip quote mark
                 break;
             }
 
             // skip any char after STRING_ESCAPE
-            else if (text.startsWith(Constants.STRING_ESCAPE, offset) && offset + 1 < text.length()) {
+            else if (startsWith(Constants.STRING_ESCAPE) && offset + 1 < limit) {
                 skip(Constants.STRING_ESCAPE.length() + 1);
             }
 
@@ -140,69 +255,97 @@ public class Lexer {
                 forward();
             }
         }
+    }
 
-        int end = offset;
-        String content = text.substring(
-                start + Constants.STRING_START.length(),
-                end - Constants.STRING_END.length());
 
-        return new Str(content, file, start, end, startLine, startCol);
+    // the classification of characters outside ASCII is left to Character
+
+
+    public static boolean isSpace(char c) {
+        return c < 128 ? (charClass[c] & SPACE) != 0 : Character.isWhitespace(c);
+    }
+
+
+    public static boolean isDigit(char c) {
+        return c < 128 ? (charClass[c] & DIGIT) != 0 : Character.isDigit(c);
+    }
+
+
+    public static boolean isDelimiter(char c) {
+        return c < 128 && (charClass[c] & DELIMITER) != 0;
     }
 
 
     public static boolean isNumberChar(char c) {
-        return Character.isLetterOrDigit(c) || c == '.' || c == '+' || c == '-';
+        return c < 128 ? (charClass[c] & NUMBER) != 0 : Character.isLetterOrDigit(c);
     }
 
 
     public Node scanNumber() throws ParserException {
         int start = offset;
-        int startLine = line;
-        int startCol = col;
-
-        while (offset < text.length() && isNumberChar(text.charAt(offset))) {
-            forward();
-        }
 
-        String content = text.substring(start, offset);
+        skipNumberChars();
+        String content = substring(start, offset);
 
-        IntNum intNum = IntNum.parse(content, file, start, offset, startLine, startCol);
+        IntNum intNum = IntNum.parse(content, file, start, offset, lines);
         if (intNum != null) {
             return intNum;
+        }
+
+        // integers which don't fit in a long
+        BigInt bigInt = BigInt.parse(content, file, start, offset, lines);
+        if (bigInt != null) {
+            return bigInt;
+        }
+
+        FloatNum floatNum = FloatNum.parse(content, file, start, offset, lines);
+        if (floatNum != null) {
+            return floatNum;
         } else {
-            FloatNum floatNum = FloatNum.parse(content, file, start, offset, startLine, startCol);
-            if (floatNum != null) {
-                return floatNum;
-            } else {
-                throw new ParserException("incorrect number format: " + content, startLine, startCol, start);
-            }
+            throw new ParserException("incorrect number format: " + content, lines.line(start), lines.col(start), start);
+        }
+    }
+
+
+    void skipNumberChars() {
+        while (offset < limit && isNumberChar(text.charAt(offset))) {
+            forward();
         }
     }
 
 
     public static boolean isIdentifierChar(char c) {
-        return Character.isLetterOrDigit(c) || Constants.IDENT_CHARS.contains(c);
+        return c < 128 ? (charClass[c] & IDENT) != 0 : Character.isLetterOrDigit(c);
     }
 
 
     public Node scanNameOrKeyword() {
         int start = offset;
-        int startLine = line;
-        int startCol = col;
 
-        while (offset < text.length() && isIdentifierChar(text.charAt(offset))) {
-            forward();
+        skipIdentifierChars();
+        // interned from the text, no String is made for a name seen before
+        if (text.charAt(start) == ':') {
+            return new Keyword(Symbol.intern(text, start + 1, offset), file, start, offset, lines);
+        } else {
+            return new Name(Symbol.intern(text, start, offset), file, start, offset, lines);
         }
+    }
 
-        String content = text.substring(start, offset);
-        if (content.startsWith(":")) {
-            return new Keyword(content.substring(1), file, start, offset, startLine, startCol);
-        } else {
-            return new Name(content, file, start, offset, startLine, startCol);
+
+    void skipIdentifierChars() {
+        while (offset < limit && isIdentifierChar(text.charAt(offset))) {
+            forward();
         }
     }
 
 
+    // whether a number starts at offset
+    boolean atNumber() {
+        char c = text.charAt(offset);
+        return isDigit(c) || ((c == '+' || c == '-') && offset + 1 < limit && isDigit(text.charAt(offset + 1)));
+    }
+
+
     /**
      * Lexer
      *
@@ -214,30 +357,27 @@ public class Lexer {
         skipSpacesAndComments();
 
         // end of file
-        if (offset >= text.length()) {
+        if (offset >= limit) {
             return null;
         }
 
         {
             // case 1. delimiters
             char cur = text.charAt(offset);
-            if (Delimeter.isDelimiter(cur)) {
-                Node ret = new Delimeter(Character.toString(cur), file, offset, offset + 1, line, col);
+            if (isDelimiter(cur)) {
+                Node ret = new Delimeter(Character.toString(cur), file, offset, offset + 1, lines);
                 forward();
                 return ret;
             }
         }
 
         // case 2. string
-        if (text.startsWith(Constants.STRING_START, offset)) {
+        if (startsWith(Constants.STRING_START)) {
             return scanString();
         }
 
         // case 3. number
-        if (Character.isDigit(text.charAt(offset)) ||
-                ((text.charAt(offset) == '+' || text.charAt(offset) == '-')
-                        && offset + 1 < text.length() && Character.isDigit(text.charAt(offset + 1))))
-        {
+        if (atNumber()) {
             return scanNumber();
         }
 
@@ -247,8 +387,38 @@ public class Lexer {
         }
 
         // case 5. syntax error
-        throw new ParserException("unrecognized syntax: " + text.substring(offset, offset + 1),
-                line, col, offset);
+        throw new ParserException("unrecognized syntax: " + substring(offset, offset + 1),
+                lines.line(offset), lines.col(offset), offset);
+    }
+
+
+    /**
+     * Move past the next token like nextToken, but without making a node,
+     * for scans which only need to know where the delimiters are
+     *
+     * @return the delimiter, 0 for other tokens, or -1 if the text ends
+     */
+    public int skipToken() throws ParserException {
+        skipSpacesAndComments();
+        if (offset >= limit) {
+            return -1;
+        }
+
+        char cur = text.charAt(offset);
+        if (isDelimiter(cur)) {
+            forward();
+            return cur;
+        } else if (startsWith(Constants.STRING_START)) {
+            skipString();
+        } else if (atNumber()) {
+            skipNumberChars();
+        } else if (isIdentifierChar(cur)) {
+            skipIdentifierChars();
+        } else {
+            throw new ParserException("unrecognized syntax: " + substring(offset, offset + 1),
+                    lines.line(offset), lines.col(offset), offset);
+        }
+        return 0;
     }
 
 
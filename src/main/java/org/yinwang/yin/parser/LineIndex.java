@@ -0,0 +1,76 @@
+package org.yinwang.yin.parser;
+
+
+import java.util.Arrays;
+
+
+/**
+ * Offsets where the lines of a text start, built once per text. Tokens and
+ * nodes keep only offsets and this index, and their line and column are
+ * found by a binary search when an error message asks for them.
+ */
+public class LineIndex {
+
+    public int[] starts;
+    public int count;
+
+
+    public LineIndex(CharSequence text) {
+        starts = new int[16];
+        count = 1;
+        extend(text, 0);
+    }
+
+
+    /**
+     * Index of the first count offsets of starts, as stored by AstCache
+     */
+    public LineIndex(int[] starts, int count) {
+        this.starts = starts;
+        this.count = count;
+    }
+
+
+    /**
+     * Add the lines of text which start after offset from
+     */
+    public void extend(CharSequence text, int from) {
+        int n = text.length();
+        for (int i = from; i < n; i++) {
+            if (text.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+    }
+
+
+    /**
+     * Line of offset, counting from 0
+     */
+    public int line(int offset) {
+        // the last line which starts at or before offset
+        int lo = 0;
+        int hi = count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= offset) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+
+    /**
+     * Column of offset, counting from 0
+     */
+    public int col(int offset) {
+        return offset - starts[line(offset)];
+    }
+
+}
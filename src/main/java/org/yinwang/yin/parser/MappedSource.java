@@ -0,0 +1,324 @@
+package org.yinwang.yin.parser;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+
+/**
+ * The text of a UTF-8 file as a CharSequence, without decoding all of it
+ * into memory. The file is memory-mapped and cut into chunks of about
+ * CHUNK_BYTES bytes, on character boundaries. The chunks and their lengths
+ * in chars are found from the bytes, and a chunk is only decoded when it
+ * is first read. Only the last few decoded chunks are kept. The lexer
+ * reads forward, so it almost always hits the current chunk.
+ */
+public class MappedSource implements CharSequence {
+
+    static final int CHUNK_BYTES = 1 << 16;
+    static final int CACHED = 2;
+
+    MappedByteBuffer bytes;
+    int length;
+
+    // chunk k is the bytes from byteStarts[k] to byteStarts[k + 1], which
+    // decode to the chars from charStarts[k] to charStarts[k + 1]
+    int[] byteStarts;
+    int[] charStarts;
+    int chunks;
+
+    // decoded chunks, the most recently used first
+    int[] cachedIds = new int[CACHED];
+    char[][] cachedChars = new char[CACHED][];
+    int current = 0;        // chunk of the last charAt
+
+    // chars of the current chunk, from windowStart to windowEnd
+    char[] window;
+    int windowStart = 0;
+    int windowEnd = 0;
+
+    CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+
+    public MappedSource(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        Arrays.fill(cachedIds, -1);
+        index();
+    }
+
+
+    /**
+     * Reader of the same file which shares the mapping and the chunks of
+     * other, with its own decoded chunks, for use in another thread
+     */
+    public MappedSource(MappedSource other) {
+        bytes = other.bytes;
+        length = other.length;
+        byteStarts = other.byteStarts;
+        charStarts = other.charStarts;
+        chunks = other.chunks;
+        Arrays.fill(cachedIds, -1);
+    }
+
+
+    /**
+     * Find the chunk boundaries and the length in chars from the bytes. A
+     * chunk ends before a lead byte, so that no sequence is cut. Only a
+     * chunk which isn't well-formed UTF-8 is decoded, to count the chars
+     * its replacements make.
+     */
+    void index() {
+        byteStarts = new int[16];
+        charStarts = new int[16];
+        chunks = 0;
+
+        int pos = 0;
+        int chars = 0;
+        int size = bytes.limit();
+
+        while (true) {
+            addChunk(pos, chars);
+            if (pos == size) {
+                break;
+            }
+            int end = Math.min(size, pos + CHUNK_BYTES);
+            // back up to a lead byte, at most the 3 continuation bytes of a sequence
+            for (int i = 0; i < 3 && end < size && end > pos + 1 && isContinuation(bytes.get(end)); i++) {
+                end--;
+            }
+            int n = countChars(pos, end);
+            if (n < 0) {
+                CharBuffer out = CharBuffer.allocate(end - pos);
+                decoder.reset();
+                decoder.decode(slice(pos, end), out, true);
+                decoder.flush(out);
+                n = out.position();
+            }
+            pos = end;
+            chars += n;
+        }
+        chunks--;       // the last entry only marks the end
+        length = chars;
+    }
+
+
+    static boolean isContinuation(byte b) {
+        return (b & 0xc0) == 0x80;
+    }
+
+
+    /**
+     * Chars of the bytes from start to end, or -1 if they aren't
+     * well-formed UTF-8. A sequence of 4 bytes is two chars.
+     */
+    int countChars(int start, int end) {
+        int chars = 0;
+        int i = start;
+        while (i < end) {
+            int b = bytes.get(i) & 0xff;
+            if (b < 0x80) {
+                i++;
+                chars++;
+                continue;
+            }
+
+            // the number of continuation bytes, and the range of the first
+            // one, which rules out overlong forms, surrogates and values
+            // above U+10FFFF
+            int n;
+            int min = 0x80;
+            int max = 0xbf;
+            if (b >= 0xc2 && b <= 0xdf) {
+                n = 1;
+            } else if (b >= 0xe0 && b <= 0xef) {
+                n = 2;
+                if (b == 0xe0) {
+                    min = 0xa0;
+                } else if (b == 0xed) {
+                    max = 0x9f;
+                }
+            } else if (b >= 0xf0 && b <= 0xf4) {
+                n = 3;
+                if (b == 0xf0) {
+                    min = 0x90;
+                } else if (b == 0xf4) {
+                    max = 0x8f;
+                }
+            } else {
+                return -1;
+            }
+            if (end - i <= n) {
+                return -1;
+            }
+            int b1 = bytes.get(i + 1) & 0xff;
+            if (b1 < min || b1 > max) {
+                return -1;
+            }
+            for (int j = 2; j <= n; j++) {
+                if (!isContinuation(bytes.get(i + j))) {
+                    return -1;
+                }
+            }
+            i += n + 1;
+            chars += n == 3 ? 2 : 1;
+        }
+        return chars;
+    }
+
+
+    void addChunk(int byteStart, int charStart) {
+        if (chunks == byteStarts.length) {
+            byteStarts = Arrays.copyOf(byteStarts, chunks * 2);
+            charStarts = Arrays.copyOf(charStarts, chunks * 2);
+        }
+        byteStarts[chunks] = byteStart;
+        charStarts[chunks] = charStart;
+        chunks++;
+    }
+
+
+    // the bytes from start to end, positions stay those of the file
+    ByteBuffer slice(int start, int end) {
+        ByteBuffer b = bytes.duplicate();
+        b.limit(end);
+        b.position(start);
+        return b;
+    }
+
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+
+    @Override
+    public char charAt(int index) {
+        if (index >= windowStart && index < windowEnd) {
+            return window[index - windowStart];
+        }
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        int k = findChunk(index);
+        window = decoded(k);
+        windowStart = charStarts[k];
+        windowEnd = charStarts[k + 1];
+        return window[index - windowStart];
+    }
+
+
+    int findChunk(int index) {
+        int k = current;
+        if (index < charStarts[k]) {
+            int lo = 0;
+            int hi = k;
+            while (lo + 1 < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (charStarts[mid] <= index) {
+                    lo = mid;
+                } else {
+                    hi = mid;
+                }
+            }
+            k = lo;
+        } else {
+            while (index >= charStarts[k + 1]) {
+                k++;
+            }
+        }
+        current = k;
+        return k;
+    }
+
+
+    // chars of chunk k, decoding it if it isn't cached
+    char[] decoded(int k) {
+        if (cachedIds[0] == k) {
+            return cachedChars[0];
+        }
+
+        int i = 1;
+        while (i < CACHED && cachedIds[i] != k) {
+            i++;
+        }
+        char[] chars;
+        if (i < CACHED) {
+            chars = cachedChars[i];
+        } else {
+            i = CACHED - 1;
+            if (cachedChars[i] == window) {
+                windowEnd = windowStart;    // its array is about to be reused
+            }
+            chars = decode(k, cachedChars[i]);
+        }
+
+        // move to the front
+        System.arraycopy(cachedIds, 0, cachedIds, 1, i);
+        System.arraycopy(cachedChars, 0, cachedChars, 1, i);
+        cachedIds[0] = k;
+        cachedChars[0] = chars;
+        return chars;
+    }
+
+
+    /**
+     * Decode chunk k, reusing the array of an evicted chunk if it is big
+     * enough. The decoder gets the bytes of the chunk alone, as index()
+     * does for a malformed chunk, so it makes the chars counted there.
+     */
+    char[] decode(int k, char[] reuse) {
+        int n = charStarts[k + 1] - charStarts[k];
+        char[] chars = reuse != null && reuse.length >= n ? reuse : new char[Math.max(n, CHUNK_BYTES)];
+        CharBuffer out = CharBuffer.wrap(chars, 0, n);
+        decoder.reset();
+        decoder.decode(slice(byteStarts[k], byteStarts[k + 1]), out, true);
+        decoder.flush(out);
+        return chars;
+    }
+
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("range " + start + " to " + end + ", length " + length);
+        }
+        if (start == end) {
+            return "";
+        }
+        int first = findChunk(start);
+        if (end <= charStarts[first + 1]) {
+            return new String(decoded(first), start - charStarts[first], end - start);
+        }
+
+        StringBuilder sb = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            int k = findChunk(i);
+            int to = Math.min(end, charStarts[k + 1]);
+            sb.append(decoded(k), i - charStarts[k], to - i);
+            i = to;
+        }
+        return sb.toString();
+    }
+
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+}
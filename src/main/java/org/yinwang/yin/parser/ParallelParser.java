@@ -0,0 +1,189 @@
+package org.yinwang.yin.parser;
+
+
+import org.yinwang.yin.Constants;
+import org.yinwang.yin.Util;
+import org.yinwang.yin.ast.Block;
+import org.yinwang.yin.ast.Delimeter;
+import org.yinwang.yin.ast.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Parse a big file on the common ForkJoinPool. A quick scan over the
+ * tokens, which only counts delimiters, cuts the text between top-level
+ * forms into ranges, and each range is pre-parsed and parsed by a task of
+ * its own. The lexers of the ranges share the LineIndex of the whole text,
+ * so the nodes have the same places as in a sequential parse.
+ */
+public class ParallelParser {
+
+    static final int MIN_TEXT = 1 << 20;        // smaller texts are parsed sequentially
+    static final int MIN_RANGE = 1 << 16;
+
+
+    public static boolean isWorthwhile(CharSequence text) {
+        return text.length() >= MIN_TEXT && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+
+    /**
+     * Parse text into the same Block as Parser.parse, or return null if the
+     * scan finds an error, which is left for a sequential parse to report
+     */
+    public static Node parse(String file, CharSequence text) throws ParserException {
+        LineIndex lines = new LineIndex(text);
+        int size = Math.max(MIN_RANGE, text.length() / (ForkJoinPool.getCommonPoolParallelism() * 4));
+        List<Integer> cuts = split(new Lexer(file, text, lines, 0, text.length()), size);
+        if (cuts == null) {
+            return null;
+        }
+
+        List<Range> ranges = new ArrayList<>();
+        for (int i = 0; i + 1 < cuts.size(); i++) {
+            ranges.add(new Range(file, text, lines, cuts.get(i), cuts.get(i + 1)));
+        }
+        ForkJoinTask.invokeAll(ranges);
+
+        // the error a sequential parse reports first. It pre-parses all of
+        // the text, then groups the top-level attribute accesses, before it
+        // parses any of the forms.
+        for (Range r : ranges) {
+            if (r.preparseError != null) {
+                throw r.preparseError;
+            }
+        }
+        for (Range r : ranges) {
+            if (r.groupError != null) {
+                throw r.groupError;
+            }
+        }
+        for (Range r : ranges) {
+            if (r.parseError != null) {
+                throw r.parseError;
+            }
+        }
+
+        List<Node> statements = new ArrayList<>();
+        for (Range r : ranges) {
+            statements.addAll(r.statements);
+        }
+        int start = statements.isEmpty() ? 0 : statements.get(0).start;
+        int end = statements.isEmpty() ? 0 : statements.get(statements.size() - 1).end;
+        return new Block(statements, Util.unifyPath(file), start, end, lines);
+    }
+
+
+    /**
+     * Offsets which cut the text of lexer into ranges of whole top-level
+     * forms, each at least size chars long except the last one. Returns
+     * null if the text has a lexical error or its delimiters don't balance.
+     */
+    static List<Integer> split(Lexer lexer, int size) {
+        List<Integer> cuts = new ArrayList<>();
+        cuts.add(0);
+        int depth = 0;
+        boolean afterDot = false;
+
+        try {
+            while (true) {
+                lexer.skipSpacesAndComments();
+                int start = lexer.offset;
+                // not between the parts of a top-level attribute access a.b
+                if (depth == 0 && start < lexer.limit && start - cuts.get(cuts.size() - 1) >= size
+                        && !afterDot && !lexer.startsWith(Constants.ATTRIBUTE_ACCESS))
+                {
+                    cuts.add(start);
+                }
+
+                int c = lexer.skipToken();
+                afterDot = c == Constants.ATTRIBUTE_ACCESS.charAt(0);
+                if (c < 0) {
+                    break;
+                } else if (c > 0) {
+                    String delim = Character.toString((char) c);
+                    if (Delimeter.delimMap.containsKey(delim)) {
+                        depth++;
+                    } else if (Delimeter.delimMap.containsValue(delim) && --depth < 0) {
+                        return null;
+                    }
+                }
+            }
+        } catch (ParserException e) {
+            return null;
+        }
+
+        if (depth != 0) {
+            return null;
+        }
+        cuts.add(lexer.limit);
+        return cuts;
+    }
+
+
+    /**
+     * Task which parses the forms from start to end
+     */
+    static class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        String file;
+        CharSequence text;
+        LineIndex lines;
+        int start;
+        int end;
+
+        List<Node> statements = new ArrayList<>();
+        ParserException preparseError;
+        ParserException groupError;
+        ParserException parseError;
+
+
+        Range(String file, CharSequence text, LineIndex lines, int start, int end) {
+            this.file = file;
+            this.text = text;
+            this.lines = lines;
+            this.start = start;
+            this.end = end;
+        }
+
+
+        @Override
+        protected void compute() {
+            // a MappedSource can't be shared, its LineIndex can
+            CharSequence view = text instanceof MappedSource ? new MappedSource((MappedSource) text) : text;
+            PreParser preparser = new PreParser(new Lexer(file, view, lines, start, end));
+
+            List<Node> prenodes = new ArrayList<>();
+            try {
+                for (Node s = preparser.nextNode(); s != null; s = preparser.nextNode()) {
+                    prenodes.add(s);
+                }
+            } catch (ParserException e) {
+                preparseError = e;
+                return;
+            }
+
+            try {
+                prenodes = Parser.groupAttr(prenodes);
+            } catch (ParserException e) {
+                groupError = e;
+                return;
+            }
+
+            try {
+                for (Node prenode : prenodes) {
+                    statements.add(Parser.parseNode(prenode));
+                }
+            } catch (ParserException e) {
+                parseError = e;
+            }
+        }
+    }
+
+}
@@ -18,8 +18,40 @@ import java.util.Map;
  */
 public class Parser {
 
+    /**
+     * Parse file, or read its tree from the AstCache if it has been parsed
+     * before with the same content
+     */
     public static Node parse(String file) throws ParserException {
-        PreParser preparser = new PreParser(file);
+        CharSequence text = Lexer.readSource(file);
+        AstCache cache = AstCache.open(file, text);
+        if (cache != null) {
+            Node program = cache.load();
+            if (program != null) {
+                return program;
+            }
+        }
+
+        Node program = parseText(file, text);
+        if (cache != null) {
+            cache.store(program);
+        }
+        return program;
+    }
+
+
+    /**
+     * Parse text, the content of file, without the cache
+     */
+    public static Node parseText(String file, CharSequence text) throws ParserException {
+        if (ParallelParser.isWorthwhile(text)) {
+            Node program = ParallelParser.parse(file, text);
+            if (program != null) {
+                return program;
+            }
+        }
+
+        PreParser preparser = new PreParser(file, text);
         Node prenode = preparser.parse();
         return parseNode(prenode);
     }
@@ -32,12 +64,12 @@ public class Parser {
             return prenode;
         } else {
             // Case 2: node is of form (..) or [..]
-            Tuple tuple = ((Tuple) prenode);
+            Tuple tuple = groupAttr((Tuple) prenode);
             List<Node> elements = tuple.elements;
 
             if (delimType(tuple.open, Constants.SQUARE_BEGIN)) {
                 // Case 2.1: node is of form [..]
-                return new VectorLiteral(parseList(elements), tuple.file, tuple.start, tuple.end, tuple.line, tuple.col);
+                return new VectorLiteral(parseList(elements), tuple.file, tuple.start, tuple.end, tuple.lines);
             } else {
                 // Case 2.2: node is (..)
                 if (elements.isEmpty()) {
@@ -80,7 +112,7 @@ public class Parser {
     public static Block parseBlock(Tuple tuple) throws ParserException {
         List<Node> elements = tuple.elements;
         List<Node> statements = parseList(elements.subList(1, elements.size()));
-        return new Block(statements, tuple.file, tuple.start, tuple.end, tuple.line, tuple.col);
+        return new Block(statements, tuple.file, tuple.start, tuple.end, tuple.lines);
     }
 
 
@@ -92,7 +124,7 @@ public class Parser {
         Node test = parseNode(elements.get(1));
         Node conseq = parseNode(elements.get(2));
         Node alter = parseNode(elements.get(3));
-        return new If(test, conseq, alter, tuple.file, tuple.start, tuple.end, tuple.line, tuple.col);
+        return new If(test, conseq, alter, tuple.file, tuple.start, tuple.end, tuple.lines);
     }
 
 
@@ -103,7 +135,7 @@ public class Parser {
         }
         Node pattern = parseNode(elements.get(1));
         Node value = parseNode(elements.get(2));
-        return new Def(pattern, value, tuple.file, tuple.start, tuple.end, tuple.line, tuple.col);
+        return new Def(pattern, value, tuple.file, tuple.start, tuple.end, tuple.lines);
 
     }
 
@@ -115,7 +147,7 @@ public class Parser {
         }
         Node pattern = parseNode(elements.get(1));
         Node value = parseNode(elements.get(2));
-        return new Assign(pattern, value, tuple.file, tuple.start, tuple.end, tuple.line, tuple.col);
+        return new Assign(pattern, value, tuple.file, tuple.start, tuple.end, tuple.lines);
     }
 
 
@@ -125,7 +157,7 @@ public class Parser {
             throw new ParserException("syntax error in record type definition", tuple);
         }
         Scope properties = parseProperties(elements.subList(1, elements.size()));
-        return new Declare(properties, tuple.file, tuple.start, tuple.end, tuple.line, tuple.col);
+        return new Declare(properties, tuple.file, tuple.start, tuple.end, tuple.lines);
     }
 
 
@@ -186,10 +218,10 @@ public class Parser {
         List<Node> statements = parseList(elements.subList(2, elements.size()));
         int start = statements.get(0).start;
         int end = statements.get(statements.size() - 1).end;
-        Node body = new Block(statements, tuple.file, start, end, tuple.line, tuple.col);
+        Node body = new Block(statements, tuple.file, start, end, tuple.lines);
 
         return new Fun(paramNames, properties, body,
-                tuple.file, tuple.start, tuple.end, tuple.line, tuple.col);
+                tuple.file, tuple.start, tuple.end, tuple.lines);
     }
 
 
@@ -229,7 +261,7 @@ public class Parser {
 
         Scope properties = parseProperties(fields);
         return new RecordDef((Name) name, parents, properties, tuple.file,
-                tuple.start, tuple.end, tuple.line, tuple.col);
+                tuple.start, tuple.end, tuple.lines);
     }
 
 
@@ -238,7 +270,74 @@ public class Parser {
         Node func = parseNode(elements.get(0));
         List<Node> parsedArgs = parseList(elements.subList(1, elements.size()));
         Argument args = new Argument(parsedArgs);
-        return new Call(func, args, tuple.file, tuple.start, tuple.end, tuple.line, tuple.col);
+        return new Call(func, args, tuple.file, tuple.start, tuple.end, tuple.lines);
+    }
+
+
+    /**
+     * Group the elements a . b of tuple into attribute accesses, so that
+     * p.x.y is (p.x).y
+     */
+    public static Tuple groupAttr(Tuple tuple) throws ParserException {
+        List<Node> elements = tuple.elements;
+        List<Node> grouped;
+        if (!elements.isEmpty() && elements.get(0) instanceof Name
+                && ((Name) elements.get(0)).id.equals(Constants.SEQ_KEYWORD))
+        {
+            // the keyword of (seq ...), as around the top-level forms of a
+            // file or the input of the REPL, is not a record to access
+            List<Node> forms = elements.subList(1, elements.size());
+            List<Node> groupedForms = groupAttr(forms);
+            if (groupedForms == forms) {
+                return tuple;
+            }
+            grouped = new ArrayList<>();
+            grouped.add(elements.get(0));
+            grouped.addAll(groupedForms);
+        } else {
+            grouped = groupAttr(elements);
+            if (grouped == elements) {
+                return tuple;
+            }
+        }
+        return new Tuple(grouped, tuple.open, tuple.close, tuple.file, tuple.start, tuple.end, tuple.lines);
+    }
+
+
+    /**
+     * Group the attribute accesses of a list of nodes, as in a tuple or
+     * the top-level forms. Returns elements itself if there are none.
+     */
+    public static List<Node> groupAttr(List<Node> elements) throws ParserException {
+        boolean found = false;
+        for (Node e : elements) {
+            if (delimType(e, Constants.ATTRIBUTE_ACCESS)) {
+                found = true;
+                break;
+            }
+        }
+        if (!found) {
+            return elements;
+        }
+
+        List<Node> grouped = new ArrayList<>();
+        for (int i = 0; i < elements.size(); i++) {
+            Node e = elements.get(i);
+            if (delimType(e, Constants.ATTRIBUTE_ACCESS)) {
+                if (grouped.isEmpty()) {
+                    throw new ParserException("attribute access without a record", e);
+                }
+                if (i + 1 == elements.size() || !(elements.get(i + 1) instanceof Name)) {
+                    throw new ParserException("attribute must be a name", e);
+                }
+                Node value = parseNode(grouped.remove(grouped.size() - 1));
+                Name attr = (Name) elements.get(++i);
+                grouped.add(new Attr(value, attr, value.file, value.start, attr.end, value.lines));
+            } else {
+                grouped.add(e);
+            }
+        }
+        return grouped;
     }
 
 
@@ -280,7 +379,7 @@ public class Parser {
             {
                 throw new ParserException("incorrect form of descriptor: " + field.toString(), field);
             } else {
-                List<Node> elements = parseList(((Tuple) field).elements);
+                List<Node> elements = parseList(groupAttr((Tuple) field).elements);
                 Node nameNode = elements.get(0);
                 if (!(nameNode instanceof Name)) {
                     throw new ParserException("expect a name, but got: " + nameNode.toString(), nameNode);
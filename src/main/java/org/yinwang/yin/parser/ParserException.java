@@ -19,8 +19,8 @@ public class ParserException extends Exception {
 
     public ParserException(String message, Node node) {
         super(message);
-        this.line = node.line;
-        this.col = node.col;
+        this.line = node.line();
+        this.col = node.col();
         this.start = node.start;
     }
 
@@ -21,15 +21,41 @@ public class PreParser {
     protected String file;
     protected Lexer lexer;
 
+    // delimiters which nextForm has opened and not yet closed, and the
+    // nodes read inside each of them
+    List<Node> openDelims = new ArrayList<>();
+    List<List<Node>> openElements = new ArrayList<>();
+
 
     public PreParser(String file) {
         this.file = Util.unifyPath(file);
         this.lexer = new Lexer(file);
     }
 
-    public PreParser(StringBuffer buffer) {
+    public PreParser(String file, CharSequence text) {
+        this.file = Util.unifyPath(file);
+        this.lexer = new Lexer(file, text);
+    }
+
+
+    PreParser(Lexer lexer) {
+        this.file = lexer.file;
+        this.lexer = lexer;
+    }
+
+
+    /**
+     * PreParser over input which comes in pieces, for the REPL. Give it
+     * input with append and take the forms with nextForm.
+     */
+    public PreParser() {
         this.file = null;
-        this.lexer = new Lexer(buffer);
+        this.lexer = new Lexer();
+    }
+
+
+    public void append(String input) {
+        lexer.append(input);
     }
 
     /**
@@ -69,7 +95,7 @@ public class PreParser {
                     elements.add(next);
                 }
             }
-            return new Tuple(elements, first, next, first.file, first.start, next.end, first.line, first.col);
+            return new Tuple(elements, first, next, first.file, first.start, next.end, first.lines);
         } else if (depth == 0 && Delimeter.isClose(first)) {
             throw new ParserException("unmatched closing delimeter: " + first.toString() +
                     " does not close any open delimeter", first);
@@ -79,22 +105,81 @@ public class PreParser {
     }
 
 
+    /**
+     * Next complete top-level node of the input given so far, or null if
+     * the input ends first. The open delimiters and the nodes after them
+     * stay on a stack, so that the next call goes on from the last token
+     * read instead of from the start of the form.
+     */
+    public Node nextForm() throws ParserException {
+        while (true) {
+            int start = lexer.offset;
+            Node token;
+            try {
+                token = lexer.nextToken();
+            } catch (ParserException e) {
+                lexer.offset = start;       // read the token again with more input
+                throw e;
+            }
+
+            if (token == null) {
+                return null;
+            }
+
+            Node node;
+            if (Delimeter.isOpen(token)) {
+                openDelims.add(token);
+                openElements.add(new ArrayList<Node>());
+                continue;
+            } else if (Delimeter.isClose(token)) {
+                if (openDelims.isEmpty()) {
+                    throw new ParserException("unmatched closing delimeter: " + token.toString() +
+                            " does not close any open delimeter", token);
+                }
+                Node first = openDelims.remove(openDelims.size() - 1);
+                List<Node> elements = openElements.remove(openElements.size() - 1);
+                if (!Delimeter.match(first, token)) {
+                    throw new ParserException("unmatched closing delimeter: " +
+                            token.toString() + " does not close " + first.toString(), token);
+                }
+                node = new Tuple(elements, first, token, first.file, first.start, token.end, first.lines);
+            } else {
+                node = token;
+            }
+
+            if (openDelims.isEmpty()) {
+                return node;
+            } else {
+                openElements.get(openElements.size() - 1).add(node);
+            }
+        }
+    }
+
+
     /**
      * Parse file into a Node
      *
      * @return a Tuple containing the file's parse tree
      */
     public Node parse() throws ParserException {
+        List<Node> forms = new ArrayList<>();
+        for (Node s = nextNode(); s != null; s = nextNode()) {
+            forms.add(s);
+        }
+        return program(forms);
+    }
+
+
+    /**
+     * Top-level forms in a synthetic (seq ...), as parse returns them
+     */
+    public Tuple program(List<Node> forms) {
         List<Node> elements = new ArrayList<>();
         elements.add(Name.genName(Constants.SEQ_KEYWORD));      // synthetic block keyword
+        elements.addAll(forms);
 
-        Node s = nextNode();
-        Node first = s;
-        Node last = null;
-        for (; s != null; last = s, s = nextNode()) {
-            elements.add(s);
-        }
-
+        Node first = forms.isEmpty() ? null : forms.get(0);
+        Node last = forms.isEmpty() ? null : forms.get(forms.size() - 1);
         return new Tuple(
                 elements,
                 Name.genName(Constants.PAREN_BEGIN),
@@ -102,7 +187,7 @@ public class PreParser {
                 file,
                 first == null ? 0 : first.start,
                 last == null ? 0 : last.end,
-                0, 0
+                lexer.lines
         );
     }
 
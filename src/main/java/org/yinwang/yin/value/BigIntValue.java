@@ -0,0 +1,34 @@
+package org.yinwang.yin.value;
+
+
+import java.math.BigInteger;
+
+
+/**
+ * Integer outside the range of long. Arithmetic on IntValue promotes to
+ * this only when it overflows, and results which fit are turned back into
+ * IntValue, so an integer has only one representation.
+ */
+public class BigIntValue extends Value {
+    public final BigInteger value;
+
+
+    public BigIntValue(BigInteger value) {
+        this.value = value;
+    }
+
+
+    public static Value of(BigInteger value) {
+        if (value.bitLength() < Long.SIZE) {
+            return IntValue.of(value.longValue());
+        } else {
+            return new BigIntValue(value);
+        }
+    }
+
+
+    public String toString() {
+        return value.toString();
+    }
+
+}
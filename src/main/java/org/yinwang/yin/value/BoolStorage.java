@@ -0,0 +1,42 @@
+package org.yinwang.yin.value;
+
+
+import java.util.List;
+
+
+public class BoolStorage extends VectorStorage {
+
+    public boolean[] elements;
+
+
+    public BoolStorage(List<Value> values) {
+        this.elements = new boolean[values.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = ((BoolValue) values.get(i)).value;
+        }
+    }
+
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+
+    @Override
+    public Value get(int i) {
+        return BoolValue.of(elements[i]);
+    }
+
+
+    @Override
+    public VectorStorage set(int i, Value value) {
+        if (value instanceof BoolValue) {
+            elements[i] = ((BoolValue) value).value;
+            return this;
+        } else {
+            return generalize(i, value);
+        }
+    }
+
+}
@@ -9,6 +9,12 @@ public class BoolValue extends Value {
         this.value = value;
     }
 
+
+    public static Value of(boolean value) {
+        return value ? Value.TRUE : Value.FALSE;
+    }
+
+
     public String toString() {
         return value ? "true" : "false";
     }
@@ -1,20 +1,82 @@
 package org.yinwang.yin.value;
 
 
+import org.yinwang.yin.Frame;
 import org.yinwang.yin.Scope;
 import org.yinwang.yin.ast.Fun;
+import org.yinwang.yin.jit.CompiledCode;
 
 public class Closure extends Value {
 
     public Fun fun;
     public Scope properties;
-    public Scope env;
+    public Object[] captured;       // values of the free variables, or their cells
+    public CompiledCode code;
+    public Value[] defaults;        // default value of each parameter, built on first use
 
 
-    public Closure(Fun fun, Scope properties, Scope env) {
+    public Closure(Fun fun, Scope properties, Object[] captured) {
         this.fun = fun;
         this.properties = properties;
-        this.env = env;
+        this.captured = captured;
+        this.code = fun.code;
+        if (properties == fun.constantProperties) {
+            defaults = fun.constantDefaults;
+        }
+    }
+
+
+    /**
+     * Run the body in a frame with the arguments bound. Tail calls in the
+     * body come back as TailCall and are run here, so they don't grow the
+     * Java stack.
+     */
+    public Value invoke(Frame funFrame) {
+        Value result = run(funFrame);
+        while (result instanceof TailCall) {
+            TailCall next = (TailCall) result;
+            result = next.closure.run(next.frame);
+        }
+        return result;
+    }
+
+
+    // run the generated code if there is one
+    Value run(Frame funFrame) {
+        funFrame.box(fun.cellSlots);
+        if (code != null) {
+            return code.run(funFrame);
+        } else {
+            return fun.body.interp(funFrame);
+        }
+    }
+
+
+    /**
+     * Default values of the parameters by position, null where there is
+     * none. The properties are evaluated when the closure is created, so
+     * this only needs to be built once. Closures with constant properties
+     * share the defaults of their Fun.
+     */
+    public Value[] getDefaults() {
+        if (defaults == null) {
+            defaults = defaults(fun, properties);
+        }
+        return defaults;
+    }
+
+
+    public static Value[] defaults(Fun fun, Scope properties) {
+        Value[] values = new Value[fun.params.size()];
+        if (properties != null) {
+            for (int i = 0; i < values.length; i++) {
+                Object v = properties.lookupPropertyLocal(fun.params.get(i).id, "default");
+                if (v instanceof Value) {
+                    values[i] = (Value) v;
+                }
+            }
+        }
+        return values;
     }
 
 
@@ -0,0 +1,42 @@
+package org.yinwang.yin.value;
+
+
+import java.util.List;
+
+
+public class FloatStorage extends VectorStorage {
+
+    public double[] elements;
+
+
+    public FloatStorage(List<Value> values) {
+        this.elements = new double[values.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = ((FloatValue) values.get(i)).value;
+        }
+    }
+
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+
+    @Override
+    public Value get(int i) {
+        return new FloatValue(elements[i]);
+    }
+
+
+    @Override
+    public VectorStorage set(int i, Value value) {
+        if (value instanceof FloatValue) {
+            elements[i] = ((FloatValue) value).value;
+            return this;
+        } else {
+            return generalize(i, value);
+        }
+    }
+
+}
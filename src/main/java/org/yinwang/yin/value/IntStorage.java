@@ -0,0 +1,58 @@
+package org.yinwang.yin.value;
+
+
+import java.util.List;
+
+
+/**
+ * Integers which all fit in an int. Storing a larger one widens the
+ * storage to long[].
+ */
+public class IntStorage extends VectorStorage {
+
+    public int[] elements;
+
+
+    public IntStorage(List<Value> values) {
+        this.elements = new int[values.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = (int) ((IntValue) values.get(i)).value;
+        }
+    }
+
+
+    static boolean fits(long value) {
+        return value == (int) value;
+    }
+
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+
+    @Override
+    public Value get(int i) {
+        return IntValue.of(elements[i]);
+    }
+
+
+    @Override
+    public VectorStorage set(int i, Value value) {
+        if (value instanceof IntValue) {
+            long v = ((IntValue) value).value;
+            if (fits(v)) {
+                elements[i] = (int) v;
+                return this;
+            } else {
+                LongStorage wide = new LongStorage(elements);
+                wide.elements[i] = v;
+                return wide;
+            }
+        } else {
+            return generalize(i, value);
+        }
+    }
+
+}
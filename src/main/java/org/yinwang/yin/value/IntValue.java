@@ -2,16 +2,37 @@ package org.yinwang.yin.value;
 
 
 public class IntValue extends Value {
-    public int value;
+    public final long value;
 
+    // shared instances of small integers, which are most loop counters and indices
+    static final int CACHE_LOW = -128;
+    static final int CACHE_HIGH = 1024;
+    static final IntValue[] cache = new IntValue[CACHE_HIGH - CACHE_LOW + 1];
 
-    public IntValue(int value) {
+
+    static {
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new IntValue(i + CACHE_LOW);
+        }
+    }
+
+
+    public IntValue(long value) {
         this.value = value;
     }
 
 
+    public static IntValue of(long value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return cache[(int) value - CACHE_LOW];
+        } else {
+            return new IntValue(value);
+        }
+    }
+
+
     public String toString() {
-        return Integer.toString(value);
+        return Long.toString(value);
     }
 
 }
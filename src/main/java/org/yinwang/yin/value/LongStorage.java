@@ -0,0 +1,50 @@
+package org.yinwang.yin.value;
+
+
+import java.util.List;
+
+
+public class LongStorage extends VectorStorage {
+
+    public long[] elements;
+
+
+    public LongStorage(List<Value> values) {
+        this.elements = new long[values.size()];
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = ((IntValue) values.get(i)).value;
+        }
+    }
+
+
+    public LongStorage(int[] ints) {
+        this.elements = new long[ints.length];
+        for (int i = 0; i < ints.length; i++) {
+            elements[i] = ints[i];
+        }
+    }
+
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+
+    @Override
+    public Value get(int i) {
+        return IntValue.of(elements[i]);
+    }
+
+
+    @Override
+    public VectorStorage set(int i, Value value) {
+        if (value instanceof IntValue) {
+            elements[i] = ((IntValue) value).value;
+            return this;
+        } else {
+            return generalize(i, value);
+        }
+    }
+
+}
@@ -0,0 +1,262 @@
+package org.yinwang.yin.value;
+
+
+import org.yinwang.yin.Constants;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Immutable vector with structural sharing. Elements live in a trie of
+ * 32-way nodes, except for the last up to 32 which are kept in a tail
+ * array, so that conj usually only copies the tail. An update copies one
+ * path of the trie, which is at most log32(n) nodes.
+ */
+public class PersistentVector extends Value {
+
+    static final int BITS = 5;
+    static final int WIDTH = 1 << BITS;
+    static final int MASK = WIDTH - 1;
+
+
+    /**
+     * Node of the trie. Leaves hold the elements and interior nodes hold
+     * other nodes. edit is the token of the transient which may change the
+     * node in place, or null.
+     */
+    static class TrieNode {
+        Object edit;
+        Object[] array;
+
+
+        TrieNode(Object edit, Object[] array) {
+            this.edit = edit;
+            this.array = array;
+        }
+
+
+        TrieNode(Object edit) {
+            this(edit, new Object[WIDTH]);
+        }
+    }
+
+
+    static final TrieNode EMPTY_NODE = new TrieNode(null);
+    public static final PersistentVector EMPTY = new PersistentVector(0, BITS, EMPTY_NODE, new Object[0]);
+
+    public int count;
+    int shift;              // bits of the index used by the root
+    TrieNode root;
+    Object[] tail;
+
+
+    PersistentVector(int count, int shift, TrieNode root, Object[] tail) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+
+    public static PersistentVector of(List<Value> values) {
+        TransientVector t = EMPTY.asTransient();
+        for (Value v : values) {
+            t.conj(v);
+        }
+        return t.persistent();
+    }
+
+
+    public int size() {
+        return count;
+    }
+
+
+    // index of the first element in the tail
+    int tailOffset() {
+        return count < WIDTH ? 0 : ((count - 1) >>> BITS) << BITS;
+    }
+
+
+    // the leaf or tail holding element i
+    Object[] arrayFor(int i) {
+        if (i >= tailOffset()) {
+            return tail;
+        }
+        TrieNode node = root;
+        for (int level = shift; level > 0; level -= BITS) {
+            node = (TrieNode) node.array[(i >>> level) & MASK];
+        }
+        return node.array;
+    }
+
+
+    public Value get(int i) {
+        return (Value) arrayFor(i)[i & MASK];
+    }
+
+
+    /**
+     * A vector with element i replaced by value
+     */
+    public PersistentVector assoc(int i, Value value) {
+        if (i >= tailOffset()) {
+            Object[] newTail = tail.clone();
+            newTail[i & MASK] = value;
+            return new PersistentVector(count, shift, root, newTail);
+        } else {
+            return new PersistentVector(count, shift, doAssoc(shift, root, i, value), tail);
+        }
+    }
+
+
+    static TrieNode doAssoc(int level, TrieNode node, int i, Value value) {
+        TrieNode ret = new TrieNode(null, node.array.clone());
+        if (level == 0) {
+            ret.array[i & MASK] = value;
+        } else {
+            int sub = (i >>> level) & MASK;
+            ret.array[sub] = doAssoc(level - BITS, (TrieNode) node.array[sub], i, value);
+        }
+        return ret;
+    }
+
+
+    /**
+     * A vector with value added at the end
+     */
+    public PersistentVector conj(Value value) {
+        if (count - tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = value;
+            return new PersistentVector(count + 1, shift, root, newTail);
+        }
+
+        // the tail is full, push it into the trie
+        TrieNode tailNode = new TrieNode(null, tail);
+        TrieNode newRoot;
+        int newShift = shift;
+        if ((count >>> BITS) > (1 << shift)) {
+            // no room under the root, grow a level
+            newRoot = new TrieNode(null);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(null, shift, tailNode);
+            newShift += BITS;
+        } else {
+            newRoot = pushTail(shift, root, tailNode);
+        }
+        return new PersistentVector(count + 1, newShift, newRoot, new Object[]{value});
+    }
+
+
+    TrieNode pushTail(int level, TrieNode parent, TrieNode tailNode) {
+        int sub = ((count - 1) >>> level) & MASK;
+        TrieNode ret = new TrieNode(null, parent.array.clone());
+        TrieNode toInsert;
+        if (level == BITS) {
+            toInsert = tailNode;
+        } else {
+            TrieNode child = (TrieNode) parent.array[sub];
+            toInsert = child != null ? pushTail(level - BITS, child, tailNode) : newPath(null, level - BITS, tailNode);
+        }
+        ret.array[sub] = toInsert;
+        return ret;
+    }
+
+
+    // a chain of single-child nodes down to node
+    static TrieNode newPath(Object edit, int level, TrieNode node) {
+        if (level == 0) {
+            return node;
+        } else {
+            TrieNode ret = new TrieNode(edit);
+            ret.array[0] = newPath(edit, level - BITS, node);
+            return ret;
+        }
+    }
+
+
+    /**
+     * A vector without the last element. The vector must not be empty.
+     */
+    public PersistentVector pop() {
+        if (count == 1) {
+            return EMPTY;
+        }
+        if (count - tailOffset() > 1) {
+            return new PersistentVector(count - 1, shift, root, Arrays.copyOf(tail, tail.length - 1));
+        }
+
+        // the tail becomes empty, the last leaf of the trie is the new tail
+        Object[] newTail = arrayFor(count - 2);
+        TrieNode newRoot = popTail(shift, root);
+        int newShift = shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (shift > BITS && newRoot.array[1] == null) {
+            newRoot = (TrieNode) newRoot.array[0];
+            newShift -= BITS;
+        }
+        return new PersistentVector(count - 1, newShift, newRoot, newTail);
+    }
+
+
+    TrieNode popTail(int level, TrieNode node) {
+        int sub = ((count - 2) >>> level) & MASK;
+        if (level > BITS) {
+            TrieNode newChild = popTail(level - BITS, (TrieNode) node.array[sub]);
+            if (newChild == null && sub == 0) {
+                return null;
+            } else {
+                TrieNode ret = new TrieNode(null, node.array.clone());
+                ret.array[sub] = newChild;
+                return ret;
+            }
+        } else if (sub == 0) {
+            return null;
+        } else {
+            TrieNode ret = new TrieNode(null, node.array.clone());
+            ret.array[sub] = null;
+            return ret;
+        }
+    }
+
+
+    /**
+     * Elements from start (inclusive) to end (exclusive), as a SubVector
+     * which shares them with this vector
+     */
+    public PersistentVector slice(int start, int end) {
+        if (start == end) {
+            return EMPTY;
+        } else if (start == 0 && end == count) {
+            return this;
+        } else {
+            return new SubVector(this, start, end);
+        }
+    }
+
+
+    public TransientVector asTransient() {
+        return new TransientVector(this);
+    }
+
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(Constants.SQUARE_BEGIN);
+
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(" ");
+            }
+            sb.append(get(i));
+        }
+
+        sb.append(Constants.SQUARE_END);
+        return sb.toString();
+    }
+
+}
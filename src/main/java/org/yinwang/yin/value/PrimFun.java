@@ -3,6 +3,7 @@ package org.yinwang.yin.value;
 
 import org.yinwang.yin.ast.Node;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public abstract class PrimFun extends Value {
@@ -20,6 +21,22 @@ public abstract class PrimFun extends Value {
     public abstract Value apply(List<Value> args, Node location);
 
 
+    // fixed-arity entry points, overridden by primitives to avoid building the argument list
+    public Value apply1(Value v1, Node location) {
+        List<Value> args = new ArrayList<>();
+        args.add(v1);
+        return apply(args, location);
+    }
+
+
+    public Value apply2(Value v1, Value v2, Node location) {
+        List<Value> args = new ArrayList<>();
+        args.add(v1);
+        args.add(v2);
+        return apply(args, location);
+    }
+
+
     public abstract Value typecheck(List<Value> args, Node location);
 
 
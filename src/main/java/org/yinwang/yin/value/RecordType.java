@@ -3,8 +3,10 @@ package org.yinwang.yin.value;
 
 import org.yinwang.yin.Constants;
 import org.yinwang.yin.Scope;
+import org.yinwang.yin.Symbol;
 import org.yinwang.yin.ast.Node;
 
+import java.util.HashMap;
 import java.util.Map;
 
 
@@ -14,11 +16,51 @@ public class RecordType extends Value {
     public Node definition;
     public Scope properties;
 
+    // shape of the instances: every field, including inherited ones, has an index
+    public String[] fields;
+    public Map<Symbol, Integer> shape = new HashMap<>();
+    public Value[] defaults;
 
+
+    /**
+     * @param properties a scope made for this record, which is not copied
+     */
     public RecordType(String name, Node definition, Scope properties) {
         this.name = name;
         this.definition = definition;
-        this.properties = properties.copy();
+        this.properties = properties;
+
+        fields = properties.keySet().toArray(new String[properties.keySet().size()]);
+        defaults = new Value[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            shape.put(Symbol.intern(fields[i]), i);
+            Object d = properties.lookupPropertyLocal(fields[i], "default");
+            if (d instanceof Value) {
+                defaults[i] = (Value) d;
+            }
+        }
+    }
+
+
+    /**
+     * Index of field in the instances, or -1
+     */
+    public int indexOf(Symbol field) {
+        Integer index = shape.get(field);
+        return index == null ? -1 : index;
+    }
+
+
+    public int indexOf(String field) {
+        return indexOf(Symbol.intern(field));
+    }
+
+
+    /**
+     * New instance with the default values, other fields are null
+     */
+    public RecordValue instantiate() {
+        return new RecordValue(name, this, defaults.clone());
     }
 
 
@@ -2,20 +2,32 @@ package org.yinwang.yin.value;
 
 
 import org.yinwang.yin.Constants;
-import org.yinwang.yin.Scope;
 
 
+/**
+ * Instance of a record type. The fields are kept in an array, in the order
+ * of the type's shape.
+ */
 public class RecordValue extends Value {
 
     public String name;
     public RecordType type;
-    public Scope properties;
+    public Value[] values;      // null for fields which are not initialized
 
 
-    public RecordValue(String name, RecordType type, Scope properties) {
+    public RecordValue(String name, RecordType type, Value[] values) {
         this.name = name;
         this.type = type;
-        this.properties = properties;
+        this.values = values;
+    }
+
+
+    /**
+     * Value of field, or null if there is no such field or it is not initialized
+     */
+    public Value get(String field) {
+        int index = type.indexOf(field);
+        return index < 0 ? null : values[index];
     }
 
 
@@ -25,11 +37,13 @@ public class RecordValue extends Value {
         sb.append(Constants.RECORD_KEYWORD).append(" ");
         sb.append(name == null ? "_" : name);
 
-        for (String field : properties.keySet()) {
-            sb.append(" ").append(Constants.SQUARE_BEGIN);
-            sb.append(field).append(" ");
-            sb.append(properties.lookupLocal(field));
-            sb.append(Constants.SQUARE_END);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                sb.append(" ").append(Constants.SQUARE_BEGIN);
+                sb.append(type.fields[i]).append(" ");
+                sb.append(values[i]);
+                sb.append(Constants.SQUARE_END);
+            }
         }
 
         sb.append(Constants.PAREN_END);
@@ -0,0 +1,74 @@
+package org.yinwang.yin.value;
+
+
+/**
+ * The elements of a PersistentVector from start to end, made by slice
+ * without copying them. The view shares the trie of the vector, and its
+ * updates are updates of the vector at start + i, so they cost the same.
+ * The whole vector stays alive as long as the view does.
+ */
+public class SubVector extends PersistentVector {
+
+    PersistentVector v;
+    int start;
+
+
+    SubVector(PersistentVector v, int start, int end) {
+        super(end - start, BITS, EMPTY_NODE, EMPTY.tail);
+        this.v = v;
+        this.start = start;
+    }
+
+
+    @Override
+    public Value get(int i) {
+        return v.get(start + i);
+    }
+
+
+    @Override
+    public PersistentVector assoc(int i, Value value) {
+        return new SubVector(v.assoc(start + i, value), start, start + count);
+    }
+
+
+    @Override
+    public PersistentVector conj(Value value) {
+        int end = start + count;
+        if (end == v.count) {
+            return new SubVector(v.conj(value), start, end + 1);
+        } else {
+            return new SubVector(v.assoc(end, value), start, end + 1);
+        }
+    }
+
+
+    @Override
+    public PersistentVector pop() {
+        if (count == 1) {
+            return EMPTY;
+        }
+        return new SubVector(v, start, start + count - 1);
+    }
+
+
+    @Override
+    public PersistentVector slice(int from, int to) {
+        return new SubVector(v, start + from, start + to);
+    }
+
+
+    /**
+     * A transient holding a copy of the elements, since the trie also
+     * holds the elements outside the view
+     */
+    @Override
+    public TransientVector asTransient() {
+        TransientVector t = EMPTY.asTransient();
+        for (int i = 0; i < count; i++) {
+            t.conj(get(i));
+        }
+        return t;
+    }
+
+}
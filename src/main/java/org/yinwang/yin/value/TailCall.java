@@ -0,0 +1,23 @@
+package org.yinwang.yin.value;
+
+
+import org.yinwang.yin.Frame;
+
+
+/**
+ * A call in tail position which hasn't run yet. Returned by the call site
+ * instead of calling, and run by the loop in Closure.invoke, so it never
+ * reaches Yin code.
+ */
+public class TailCall extends Value {
+
+    public Closure closure;
+    public Frame frame;
+
+
+    public TailCall(Closure closure, Frame frame) {
+        this.closure = closure;
+        this.frame = frame;
+    }
+
+}
@@ -0,0 +1,130 @@
+package org.yinwang.yin.value;
+
+
+import org.yinwang.yin.Util;
+import org.yinwang.yin.value.PersistentVector.TrieNode;
+
+import java.util.Arrays;
+
+import static org.yinwang.yin.value.PersistentVector.BITS;
+import static org.yinwang.yin.value.PersistentVector.MASK;
+import static org.yinwang.yin.value.PersistentVector.WIDTH;
+import static org.yinwang.yin.value.PersistentVector.newPath;
+
+
+/**
+ * Mutable builder for a PersistentVector, for a batch of updates. Nodes
+ * it has copied carry its edit token and are changed in place. After
+ * persistent() the transient can't be used any more, so the vector it
+ * returns never changes.
+ */
+public class TransientVector {
+
+    int count;
+    int shift;
+    TrieNode root;
+    Object[] tail;          // always WIDTH long
+    Object edit = new Object();
+
+
+    TransientVector(PersistentVector v) {
+        count = v.count;
+        shift = v.shift;
+        root = ensureEditable(v.root);
+        tail = Arrays.copyOf(v.tail, WIDTH);
+    }
+
+
+    TrieNode ensureEditable(TrieNode node) {
+        if (node.edit == edit) {
+            return node;
+        } else {
+            return new TrieNode(edit, node.array.clone());
+        }
+    }
+
+
+    void ensureAlive() {
+        if (edit == null) {
+            Util.abort("transient vector used after persistent()");
+        }
+    }
+
+
+    int tailOffset() {
+        return count < WIDTH ? 0 : ((count - 1) >>> BITS) << BITS;
+    }
+
+
+    public TransientVector conj(Value value) {
+        ensureAlive();
+        if (count - tailOffset() < WIDTH) {
+            tail[count & MASK] = value;
+            count++;
+            return this;
+        }
+
+        // the tail is full, push it into the trie
+        TrieNode tailNode = new TrieNode(edit, tail);
+        tail = new Object[WIDTH];
+        tail[0] = value;
+        if ((count >>> BITS) > (1 << shift)) {
+            TrieNode newRoot = new TrieNode(edit);
+            newRoot.array[0] = root;
+            newRoot.array[1] = newPath(edit, shift, tailNode);
+            root = newRoot;
+            shift += BITS;
+        } else {
+            root = pushTail(shift, root, tailNode);
+        }
+        count++;
+        return this;
+    }
+
+
+    TrieNode pushTail(int level, TrieNode parent, TrieNode tailNode) {
+        TrieNode ret = ensureEditable(parent);
+        int sub = ((count - 1) >>> level) & MASK;
+        TrieNode toInsert;
+        if (level == BITS) {
+            toInsert = tailNode;
+        } else {
+            TrieNode child = (TrieNode) ret.array[sub];
+            toInsert = child != null ? pushTail(level - BITS, child, tailNode) : newPath(edit, level - BITS, tailNode);
+        }
+        ret.array[sub] = toInsert;
+        return ret;
+    }
+
+
+    public TransientVector assoc(int i, Value value) {
+        ensureAlive();
+        if (i >= tailOffset()) {
+            tail[i & MASK] = value;
+        } else {
+            root = doAssoc(shift, root, i, value);
+        }
+        return this;
+    }
+
+
+    TrieNode doAssoc(int level, TrieNode node, int i, Value value) {
+        TrieNode ret = ensureEditable(node);
+        if (level == 0) {
+            ret.array[i & MASK] = value;
+        } else {
+            int sub = (i >>> level) & MASK;
+            ret.array[sub] = doAssoc(level - BITS, (TrieNode) ret.array[sub], i, value);
+        }
+        return ret;
+    }
+
+
+    public PersistentVector persistent() {
+        ensureAlive();
+        edit = null;
+        Object[] trimmed = Arrays.copyOf(tail, count - tailOffset());
+        return new PersistentVector(count, shift, root, trimmed);
+    }
+
+}
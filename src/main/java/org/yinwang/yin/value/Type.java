@@ -16,6 +16,9 @@ public class Type {
             return true;
         } else if (type2 instanceof UnionType) {
             return ((UnionType) type2).values.contains(type1);
+        } else if (type1 instanceof RecordValue && type2 instanceof RecordType) {
+            // an instance, which the type checker makes for (P ...), has the type P
+            return ((RecordValue) type1).type == type2;
         } else {
             return type1.equals(type2);
         }
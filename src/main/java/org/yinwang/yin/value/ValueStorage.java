@@ -0,0 +1,40 @@
+package org.yinwang.yin.value;
+
+
+import java.util.List;
+
+
+public class ValueStorage extends VectorStorage {
+
+    public Value[] elements;
+
+
+    public ValueStorage(Value[] elements) {
+        this.elements = elements;
+    }
+
+
+    public ValueStorage(List<Value> values) {
+        this.elements = values.toArray(new Value[values.size()]);
+    }
+
+
+    @Override
+    public int size() {
+        return elements.length;
+    }
+
+
+    @Override
+    public Value get(int i) {
+        return elements[i];
+    }
+
+
+    @Override
+    public VectorStorage set(int i, Value value) {
+        elements[i] = value;
+        return this;
+    }
+
+}
@@ -7,21 +7,26 @@ import java.util.List;
 
 public class Vector extends Value {
 
-    public List<Value> values;
+    public VectorStorage storage;
 
 
     public Vector(List<Value> values) {
-        this.values = values;
+        this.storage = VectorStorage.of(values);
+    }
+
+
+    public Value get(int idx) {
+        return storage.get(idx);
     }
 
 
     public void set(int idx, Value value) {
-        values.set(idx, value);
+        storage = storage.set(idx, value);
     }
 
 
     public int size() {
-        return values.size();
+        return storage.size();
     }
 
 
@@ -29,13 +34,11 @@ public class Vector extends Value {
         StringBuilder sb = new StringBuilder();
         sb.append(Constants.SQUARE_BEGIN);
 
-        boolean first = true;
-        for (Value v : values) {
-            if (!first) {
+        for (int i = 0; i < size(); i++) {
+            if (i > 0) {
                 sb.append(" ");
             }
-            sb.append(v);
-            first = false;
+            sb.append(get(i));
         }
 
         sb.append(Constants.SQUARE_END);
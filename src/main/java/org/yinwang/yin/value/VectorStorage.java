@@ -0,0 +1,75 @@
+package org.yinwang.yin.value;
+
+
+import java.util.List;
+
+
+/**
+ * How the elements of a Vector are stored. A vector whose elements are all
+ * integers, floats or bools keeps them unboxed in a primitive array, and
+ * switches to generic storage when a different kind of value is stored.
+ */
+public abstract class VectorStorage {
+
+    public abstract int size();
+
+
+    public abstract Value get(int i);
+
+
+    /**
+     * Store value at i, returning the storage to use from now on
+     */
+    public abstract VectorStorage set(int i, Value value);
+
+
+    /**
+     * Pick the most compact storage which can hold all of values
+     */
+    public static VectorStorage of(List<Value> values) {
+        if (values.isEmpty()) {
+            return new ValueStorage(values);
+        }
+
+        // null, the value of a missing argument, only fits generic storage
+        Value first = values.get(0);
+        if (first == null) {
+            return new ValueStorage(values);
+        }
+        Class<?> kind = first.getClass();
+        for (Value v : values) {
+            if (v == null || v.getClass() != kind) {
+                return new ValueStorage(values);
+            }
+        }
+
+        if (kind == IntValue.class) {
+            for (Value v : values) {
+                if (!IntStorage.fits(((IntValue) v).value)) {
+                    return new LongStorage(values);
+                }
+            }
+            return new IntStorage(values);
+        } else if (kind == FloatValue.class) {
+            return new FloatStorage(values);
+        } else if (kind == BoolValue.class) {
+            return new BoolStorage(values);
+        } else {
+            return new ValueStorage(values);
+        }
+    }
+
+
+    /**
+     * Generic storage with the same elements, for storing another kind of value
+     */
+    VectorStorage generalize(int i, Value value) {
+        Value[] elements = new Value[size()];
+        for (int j = 0; j < elements.length; j++) {
+            elements[j] = get(j);
+        }
+        elements[i] = value;
+        return new ValueStorage(elements);
+    }
+
+}
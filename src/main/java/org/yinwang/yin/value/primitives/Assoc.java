@@ -0,0 +1,22 @@
+package org.yinwang.yin.value.primitives;
+
+
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.*;
+
+import java.util.List;
+
+public class Assoc extends VectorPrimitive {
+
+    public Assoc() {
+        super("assoc", 3);
+    }
+
+
+    @Override
+    public Value apply(List<Value> args, Node location) {
+        PersistentVector v = vector(args.get(0), location);
+        return v.assoc(index(args.get(1), v.size(), location), args.get(2));
+    }
+
+}
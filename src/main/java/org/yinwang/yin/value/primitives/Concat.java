@@ -0,0 +1,37 @@
+package org.yinwang.yin.value.primitives;
+
+
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.*;
+
+import java.util.List;
+
+
+/**
+ * The elements of all the vectors, in order. They are added to a
+ * transient of the first vector, so its trie is shared and the nodes
+ * filled in are only copied once.
+ */
+public class Concat extends VectorPrimitive {
+
+    public Concat() {
+        super("concat", -1);
+    }
+
+
+    @Override
+    public Value apply(List<Value> args, Node location) {
+        if (args.isEmpty()) {
+            return PersistentVector.EMPTY;
+        }
+        TransientVector t = vector(args.get(0), location).asTransient();
+        for (int i = 1; i < args.size(); i++) {
+            PersistentVector v = vector(args.get(i), location);
+            for (int j = 0; j < v.size(); j++) {
+                t.conj(v.get(j));
+            }
+        }
+        return t.persistent();
+    }
+
+}
@@ -0,0 +1,27 @@
+package org.yinwang.yin.value.primitives;
+
+
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.*;
+
+import java.util.List;
+
+public class Conj extends VectorPrimitive {
+
+    public Conj() {
+        super("conj", 2);
+    }
+
+
+    @Override
+    public Value apply(List<Value> args, Node location) {
+        return apply2(args.get(0), args.get(1), location);
+    }
+
+
+    @Override
+    public Value apply2(Value v1, Value v2, Node location) {
+        return vector(v1, location).conj(v2);
+    }
+
+}
@@ -0,0 +1,27 @@
+package org.yinwang.yin.value.primitives;
+
+
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.*;
+
+import java.util.List;
+
+public class Count extends VectorPrimitive {
+
+    public Count() {
+        super("count", 1);
+    }
+
+
+    @Override
+    public Value apply(List<Value> args, Node location) {
+        return apply1(args.get(0), location);
+    }
+
+
+    @Override
+    public Value apply1(Value v1, Node location) {
+        return IntValue.of(vector(v1, location).size());
+    }
+
+}
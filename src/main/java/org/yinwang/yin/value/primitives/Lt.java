@@ -16,20 +16,30 @@ public class Lt extends PrimFun {
 
     @Override
     public Value apply(List<Value> args, Node location) {
+        return apply2(args.get(0), args.get(1), location);
+    }
 
-        Value v1 = args.get(0);
-        Value v2 = args.get(1);
+
+    @Override
+    public Value apply2(Value v1, Value v2, Node location) {
         if (v1 instanceof IntValue && v2 instanceof IntValue) {
-            return new BoolValue(((IntValue) v1).value < ((IntValue) v2).value);
+            return BoolValue.of(((IntValue) v1).value < ((IntValue) v2).value);
         }
         if (v1 instanceof FloatValue && v2 instanceof FloatValue) {
-            return new BoolValue(((FloatValue) v1).value < ((FloatValue) v2).value);
+            return BoolValue.of(((FloatValue) v1).value < ((FloatValue) v2).value);
         }
         if (v1 instanceof FloatValue && v2 instanceof IntValue) {
-            return new BoolValue(((FloatValue) v1).value < ((IntValue) v2).value);
+            return BoolValue.of(((FloatValue) v1).value < ((IntValue) v2).value);
         }
         if (v1 instanceof IntValue && v2 instanceof FloatValue) {
-            return new BoolValue(((IntValue) v1).value < ((FloatValue) v2).value);
+            return BoolValue.of(((IntValue) v1).value < ((FloatValue) v2).value);
+        }
+
+        if (Numbers.isInteger(v1) && Numbers.isInteger(v2)) {
+            return BoolValue.of(Numbers.toBig(v1).compareTo(Numbers.toBig(v2)) < 0);
+        }
+        if (Numbers.isNumber(v1) && Numbers.isNumber(v2)) {
+            return BoolValue.of(Numbers.toDouble(v1) < Numbers.toDouble(v2));
         }
 
         Util.abort(location, "incorrect argument types for <: " + v1 + ", " + v2);
@@ -16,10 +16,14 @@ public class Not extends PrimFun {
 
     @Override
     public Value apply(List<Value> args, Node location) {
+        return apply1(args.get(0), location);
+    }
 
-        Value v1 = args.get(0);
+
+    @Override
+    public Value apply1(Value v1, Node location) {
         if (v1 instanceof BoolValue) {
-            return new BoolValue(!((BoolValue) v1).value);
+            return BoolValue.of(!((BoolValue) v1).value);
         }
         Util.abort(location, "incorrect argument type for not: " + v1);
         return null;
@@ -0,0 +1,47 @@
+package org.yinwang.yin.value.primitives;
+
+
+import org.yinwang.yin.value.BigIntValue;
+import org.yinwang.yin.value.FloatValue;
+import org.yinwang.yin.value.IntValue;
+import org.yinwang.yin.value.Value;
+
+import java.math.BigInteger;
+
+
+/**
+ * Conversions for the slow paths of arithmetic, where one of the operands
+ * is a BigIntValue
+ */
+public class Numbers {
+
+    public static boolean isInteger(Value v) {
+        return v instanceof IntValue || v instanceof BigIntValue;
+    }
+
+
+    public static boolean isNumber(Value v) {
+        return isInteger(v) || v instanceof FloatValue;
+    }
+
+
+    public static BigInteger toBig(Value v) {
+        if (v instanceof IntValue) {
+            return BigInteger.valueOf(((IntValue) v).value);
+        } else {
+            return ((BigIntValue) v).value;
+        }
+    }
+
+
+    public static double toDouble(Value v) {
+        if (v instanceof IntValue) {
+            return ((IntValue) v).value;
+        } else if (v instanceof BigIntValue) {
+            return ((BigIntValue) v).value.doubleValue();
+        } else {
+            return ((FloatValue) v).value;
+        }
+    }
+
+}
@@ -16,11 +16,14 @@ public class Or extends PrimFun {
 
     @Override
     public Value apply(List<Value> args, Node location) {
+        return apply2(args.get(0), args.get(1), location);
+    }
 
-        Value v1 = args.get(0);
-        Value v2 = args.get(1);
+
+    @Override
+    public Value apply2(Value v1, Value v2, Node location) {
         if (v1 instanceof BoolValue && v2 instanceof BoolValue) {
-            return new BoolValue(((BoolValue) v1).value || ((BoolValue) v2).value);
+            return BoolValue.of(((BoolValue) v1).value || ((BoolValue) v2).value);
         }
 
         Util.abort(location, "incorrect argument types for and: " + v1 + ", " + v2);
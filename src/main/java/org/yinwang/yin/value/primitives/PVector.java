@@ -0,0 +1,21 @@
+package org.yinwang.yin.value.primitives;
+
+
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.*;
+
+import java.util.List;
+
+public class PVector extends VectorPrimitive {
+
+    public PVector() {
+        super("pvector", -1);
+    }
+
+
+    @Override
+    public Value apply(List<Value> args, Node location) {
+        return PersistentVector.of(args);
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.yinwang.yin.value.primitives;
+
+
+import org.yinwang.yin.Util;
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.*;
+
+import java.util.List;
+
+public class Pop extends VectorPrimitive {
+
+    public Pop() {
+        super("pop", 1);
+    }
+
+
+    @Override
+    public Value apply(List<Value> args, Node location) {
+        PersistentVector v = vector(args.get(0), location);
+        if (v.size() == 0) {
+            Util.abort(location, "pop of empty vector");
+        }
+        return v.pop();
+    }
+
+}
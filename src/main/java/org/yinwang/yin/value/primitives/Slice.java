@@ -0,0 +1,28 @@
+package org.yinwang.yin.value.primitives;
+
+
+import org.yinwang.yin.Util;
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.*;
+
+import java.util.List;
+
+public class Slice extends VectorPrimitive {
+
+    public Slice() {
+        super("slice", 3);
+    }
+
+
+    @Override
+    public Value apply(List<Value> args, Node location) {
+        PersistentVector v = vector(args.get(0), location);
+        int start = index(args.get(1), v.size() + 1, location);
+        int end = index(args.get(2), v.size() + 1, location);
+        if (start > end) {
+            Util.abort(location, "slice start is after its end: " + start + " > " + end);
+        }
+        return v.slice(start, end);
+    }
+
+}
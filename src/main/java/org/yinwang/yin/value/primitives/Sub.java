@@ -5,6 +5,7 @@ import org.yinwang.yin.Util;
 import org.yinwang.yin.ast.Node;
 import org.yinwang.yin.value.*;
 
+import java.math.BigInteger;
 import java.util.List;
 
 public class Sub extends PrimFun {
@@ -16,10 +17,20 @@ public class Sub extends PrimFun {
 
     @Override
     public Value apply(List<Value> args, Node location) {
-        Value v1 = args.get(0);
-        Value v2 = args.get(1);
+        return apply2(args.get(0), args.get(1), location);
+    }
+
+
+    @Override
+    public Value apply2(Value v1, Value v2, Node location) {
         if (v1 instanceof IntValue && v2 instanceof IntValue) {
-            return new IntValue(((IntValue) v1).value - ((IntValue) v2).value);
+            long a = ((IntValue) v1).value;
+            long b = ((IntValue) v2).value;
+            try {
+                return IntValue.of(Math.subtractExact(a, b));
+            } catch (ArithmeticException e) {
+                return BigIntValue.of(BigInteger.valueOf(a).subtract(BigInteger.valueOf(b)));
+            }
         }
         if (v1 instanceof FloatValue && v2 instanceof FloatValue) {
             return new FloatValue(((FloatValue) v1).value - ((FloatValue) v2).value);
@@ -31,6 +42,13 @@ public class Sub extends PrimFun {
             return new FloatValue(((IntValue) v1).value - ((FloatValue) v2).value);
         }
 
+        if (Numbers.isInteger(v1) && Numbers.isInteger(v2)) {
+            return BigIntValue.of(Numbers.toBig(v1).subtract(Numbers.toBig(v2)));
+        }
+        if (Numbers.isNumber(v1) && Numbers.isNumber(v2)) {
+            return new FloatValue(Numbers.toDouble(v1) - Numbers.toDouble(v2));
+        }
+
         Util.abort(location, "incorrect argument types for -: " + v1 + ", " + v2);
         return null;
     }
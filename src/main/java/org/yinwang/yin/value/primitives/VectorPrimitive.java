@@ -0,0 +1,51 @@
+package org.yinwang.yin.value.primitives;
+
+
+import org.yinwang.yin.Util;
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.IntValue;
+import org.yinwang.yin.value.PersistentVector;
+import org.yinwang.yin.value.PrimFun;
+import org.yinwang.yin.value.Value;
+
+import java.util.List;
+
+
+/**
+ * Base of the primitives on persistent vectors, with their argument checks
+ */
+public abstract class VectorPrimitive extends PrimFun {
+
+    protected VectorPrimitive(String name, int arity) {
+        super(name, arity);
+    }
+
+
+    protected PersistentVector vector(Value v, Node location) {
+        if (!(v instanceof PersistentVector)) {
+            Util.abort(location, "incorrect argument type for " + name + ", expecting persistent vector: " + v);
+        }
+        return (PersistentVector) v;
+    }
+
+
+    /**
+     * Check that v is an integer in [0, limit) and return it
+     */
+    protected int index(Value v, int limit, Node location) {
+        if (!(v instanceof IntValue)) {
+            Util.abort(location, "index for " + name + " is not an integer: " + v);
+        }
+        long i = ((IntValue) v).value;
+        if (i < 0 || i >= limit) {
+            Util.abort(location, "index out of bound for " + name + ": " + i + " v.s. [0, " + (limit - 1) + "]");
+        }
+        return (int) i;
+    }
+
+
+    public Value typecheck(List<Value> args, Node location) {
+        return Value.ANY;
+    }
+
+}
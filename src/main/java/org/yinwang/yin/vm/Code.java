@@ -0,0 +1,61 @@
+package org.yinwang.yin.vm;
+
+
+import org.yinwang.yin.Symbol;
+import org.yinwang.yin.ast.Fun;
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.Value;
+
+
+/**
+ * Compiled form of a function or of the main program
+ */
+public class Code {
+
+    public Fun fun;                 // null for the main program
+    public int[] code;
+    public Node[] sources;          // node of the instruction at each pc, for error messages
+    public Value[] constants;
+    public Object[] infos;          // keyword lists, patterns, property keys and attributes
+    public Code[] functions;        // nested functions
+    public int nregs;
+    public int[] paramRegs;         // register of each parameter
+    public PropertyKeys properties; // layout of the evaluated property form, or null
+
+
+    /**
+     * Index of the parameter named id, or -1
+     */
+    public int paramIndex(Symbol id) {
+        for (int i = 0; i < fun.params.size(); i++) {
+            if (fun.params.get(i).symbol == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(fun == null ? "main" : fun.toString()).append("\n");
+        sb.append("  registers: ").append(nregs).append("\n");
+
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            sb.append("  ").append(pc).append(": ").append(Op.NAMES[op]);
+            for (int i = 1; i <= Op.OPERANDS[op]; i++) {
+                sb.append(" ").append(code[pc + i]);
+            }
+            sb.append("\n");
+            pc += Op.OPERANDS[op] + 1;
+        }
+
+        for (Code f : functions) {
+            sb.append(f);
+        }
+        return sb.toString();
+    }
+
+}
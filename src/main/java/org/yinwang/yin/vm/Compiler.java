@@ -0,0 +1,557 @@
+package org.yinwang.yin.vm;
+
+
+import org.yinwang.yin.Scope;
+import org.yinwang.yin.Symbol;
+import org.yinwang.yin.ast.*;
+import org.yinwang.yin.value.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Compile a resolved AST into register code. Each function (and the main
+ * program) becomes a Code whose registers hold the slots of all its blocks,
+ * followed by temporaries. Blocks don't loop, so a block runs at most once
+ * per activation and its slots never need to be reused.
+ */
+public class Compiler {
+
+    /**
+     * Compile-time mirror of a LexicalScope, mapping its slots to registers
+     */
+    static class RegScope {
+        RegScope parent;
+        int base;
+        int frame;      // which VMFrame holds the registers, counted from the initial frame
+
+
+        RegScope(RegScope parent, int base, int frame) {
+            this.parent = parent;
+            this.base = base;
+            this.frame = frame;
+        }
+    }
+
+
+    RegScope outerScope;
+    RegScope scope;
+    int frame;
+
+    List<Integer> code = new ArrayList<>();
+    List<Node> sources = new ArrayList<>();
+    List<Value> constants = new ArrayList<>();
+    List<Object> infos = new ArrayList<>();
+    List<Code> functions = new ArrayList<>();
+
+    int nlocals;
+    int nextLocal;
+    int tempTop;
+    int maxTemps;
+
+
+    Compiler(RegScope outerScope, int frame) {
+        this.outerScope = outerScope;
+        this.scope = outerScope;
+        this.frame = frame;
+    }
+
+
+    /**
+     * Compile a program which was resolved against new LexicalScope(init)
+     */
+    public static Code compile(Node program, Scope init) {
+        RegScope root = new RegScope(null, 0, 0);
+        Compiler c = new Compiler(root, 1);
+        c.nlocals = countLocals(program);
+
+        int result = c.allocTemp();
+        c.compile(program, result);
+        c.emit(program, Op.RETURN, result);
+        return c.finish(null);
+    }
+
+
+    Code compileFun(Fun fun) {
+        scope = new RegScope(outerScope, 0, frame);
+        nextLocal = fun.frameSize;
+        nlocals = fun.frameSize + countLocals(fun.body);
+
+        int result = allocTemp();
+        compile(fun.body, result);
+        emit(fun, Op.RETURN, result);
+
+        Code c = finish(fun);
+        c.paramRegs = new int[fun.params.size()];
+        for (int i = 0; i < fun.params.size(); i++) {
+            c.paramRegs[i] = fun.params.get(i).slot;
+        }
+        return c;
+    }
+
+
+    Code finish(Fun fun) {
+        Code c = new Code();
+        c.fun = fun;
+        c.code = new int[code.size()];
+        for (int i = 0; i < c.code.length; i++) {
+            c.code[i] = code.get(i);
+        }
+        c.sources = sources.toArray(new Node[sources.size()]);
+        c.constants = constants.toArray(new Value[constants.size()]);
+        c.infos = infos.toArray();
+        c.functions = functions.toArray(new Code[functions.size()]);
+        c.nregs = nlocals + maxTemps;
+        return c;
+    }
+
+
+    void compile(Node node, int dst) {
+        if (node instanceof IntNum) {
+            loadConstant(((IntNum) node).literal, dst);
+        } else if (node instanceof BigInt) {
+            loadConstant(((BigInt) node).literal, dst);
+        } else if (node instanceof FloatNum) {
+            loadConstant(((FloatNum) node).literal, dst);
+        } else if (node instanceof Str) {
+            loadConstant(((Str) node).literal, dst);
+        } else if (node instanceof Name) {
+            compileName((Name) node, dst);
+        } else if (node instanceof Block) {
+            compileBlock((Block) node, dst);
+        } else if (node instanceof If) {
+            compileIf((If) node, dst);
+        } else if (node instanceof Def) {
+            compileDef((Def) node, dst);
+        } else if (node instanceof Assign) {
+            compileAssign((Assign) node, dst);
+        } else if (node instanceof Call) {
+            compileCall((Call) node, dst);
+        } else if (node instanceof Fun) {
+            compileFunValue((Fun) node, dst);
+        } else if (node instanceof RecordDef) {
+            compileRecordDef((RecordDef) node, dst);
+        } else if (node instanceof RecordLiteral) {
+            compileRecordLiteral((RecordLiteral) node, dst);
+        } else if (node instanceof VectorLiteral) {
+            compileVectorLiteral((VectorLiteral) node, dst);
+        } else if (node instanceof Subscript) {
+            compileSubscript((Subscript) node, dst);
+        } else if (node instanceof Attr) {
+            compileAttr((Attr) node, dst);
+        } else if (node instanceof Declare) {
+            loadConstant(Value.VOID, dst);
+        } else if (node instanceof Keyword) {
+            emit(node, Op.FAIL, constant(new StringValue("keyword used as value")));
+        } else if (dst >= 0) {
+            // forms that evaluate to nothing, e.g. delimeters
+            emit(node, Op.LOADNIL, dst);
+        }
+    }
+
+
+    void compileName(Name name, int dst) {
+        if (dst < 0) {
+            return;
+        }
+        if (name.depth < 0) {
+            // unbound variable
+            emit(name, Op.LOADNIL, dst);
+            return;
+        }
+
+        RegScope s = scope;
+        for (int i = 0; i < name.depth; i++) {
+            s = s.parent;
+        }
+        int level = frame - s.frame;
+        int reg = s.base + name.slot;
+
+        if (level == 0) {
+            if (reg != dst) {
+                emit(name, Op.MOVE, dst, reg);
+            }
+        } else {
+            emit(name, Op.GETUP, dst, level, reg);
+        }
+    }
+
+
+    void compileBlock(Block block, int dst) {
+        RegScope saved = scope;
+        if (block.scoped) {
+            scope = new RegScope(scope, nextLocal, frame);
+            nextLocal += block.frameSize;
+        }
+
+        List<Node> statements = block.statements;
+        for (int i = 0; i < statements.size() - 1; i++) {
+            compile(statements.get(i), -1);
+        }
+        compile(statements.get(statements.size() - 1), dst);
+        scope = saved;
+    }
+
+
+    void compileIf(If node, int dst) {
+        int mark = tempTop;
+        int test = allocTemp();
+        compile(node.test, test);
+        int jumpElse = emit(node, Op.JUMPF, test, 0);
+        tempTop = mark;
+
+        compile(node.then, dst);
+        int jumpEnd = emit(node, Op.JUMP, 0);
+        code.set(jumpElse + 2, code.size());
+        compile(node.orelse, dst);
+        code.set(jumpEnd + 1, code.size());
+    }
+
+
+    void compileDef(Def def, int dst) {
+        int mark = tempTop;
+        int value = allocTemp();
+        compile(def.value, value);
+
+        if (def.pattern instanceof Name) {
+            Name name = (Name) def.pattern;
+            emit(def, Op.DEFINE, scope.base + name.slot, value);
+        } else {
+            emit(def, Op.DEFPAT, value, info(compilePattern(def.pattern)));
+        }
+        tempTop = mark;
+        loadConstant(Value.VOID, dst);
+    }
+
+
+    void compileAssign(Assign assign, int dst) {
+        int mark = tempTop;
+        int value = allocTemp();
+        compile(assign.value, value);
+
+        Node pattern = assign.pattern;
+        if (pattern instanceof Name) {
+            Pattern p = compilePattern(pattern);
+            if (p.kind != Pattern.NAME) {
+                emit(pattern, Op.FAIL, constant(new StringValue("assigned name was not defined: " + pattern)));
+            } else if (p.level == 0) {
+                emit(pattern, Op.SETLOCAL, p.reg, value);
+            } else {
+                emit(pattern, Op.SETUP, p.level, p.reg, value);
+            }
+        } else if (pattern instanceof Subscript) {
+            int vector = allocTemp();
+            compile(((Subscript) pattern).value, vector);
+            int index = allocTemp();
+            compile(((Subscript) pattern).index, index);
+            emit(pattern, Op.SETSUB, vector, index, value);
+        } else if (pattern instanceof Attr) {
+            int record = allocTemp();
+            compile(((Attr) pattern).value, record);
+            emit(((Attr) pattern).attr, Op.SETATTR, record, info(pattern), value);
+        } else {
+            emit(assign, Op.SETPAT, value, info(compilePattern(pattern)));
+        }
+        tempTop = mark;
+        loadConstant(Value.VOID, dst);
+    }
+
+
+    Pattern compilePattern(Node node) {
+        if (node instanceof Name) {
+            Name name = (Name) node;
+            if (name.depth < 0) {
+                return new Pattern(Pattern.UNSUPPORTED, node);
+            }
+            Pattern p = new Pattern(Pattern.NAME, node);
+            RegScope s = scope;
+            for (int i = 0; i < name.depth; i++) {
+                s = s.parent;
+            }
+            p.level = frame - s.frame;
+            p.id = name.id;
+            p.reg = s.base + name.slot;
+            return p;
+        } else if (node instanceof VectorLiteral) {
+            Pattern p = new Pattern(Pattern.VECTOR, node);
+            List<Node> elements = ((VectorLiteral) node).elements;
+            p.elements = new Pattern[elements.size()];
+            for (int i = 0; i < elements.size(); i++) {
+                p.elements[i] = compilePattern(elements.get(i));
+            }
+            return p;
+        } else if (node instanceof RecordLiteral) {
+            Pattern p = new Pattern(Pattern.RECORD, node);
+            Map<String, Node> map = ((RecordLiteral) node).map;
+            p.keys = map.keySet().toArray(new String[map.size()]);
+            p.elements = new Pattern[map.size()];
+            for (int i = 0; i < p.keys.length; i++) {
+                p.elements[i] = compilePattern(map.get(p.keys[i]));
+            }
+            return p;
+        } else {
+            return new Pattern(Pattern.UNSUPPORTED, node);
+        }
+    }
+
+
+    void compileCall(Call call, int dst) {
+        if (call.constant != null) {
+            loadConstant(call.constant, dst);
+            return;
+        }
+
+        int mark = tempTop;
+        int target = dst >= 0 ? dst : allocTemp();
+        int fn = allocTemp();
+        compile(call.op, fn);
+
+        if (call.args.keywords.isEmpty()) {
+            List<Node> actuals = call.args.positional;
+            int start = nlocals + tempTop;
+            for (Node actual : actuals) {
+                compile(actual, allocTemp());
+            }
+            emit(call, Op.CALL, target, fn, start, actuals.size(), -1);
+        } else {
+            compileKeywordArgs(call, target, fn);
+        }
+        tempTop = mark;
+    }
+
+
+    /**
+     * Keyword arguments are evaluated in an order which depends on the
+     * callee. NEXTARG jumps to the code of the next argument, which jumps
+     * back to it, and after the last one it goes on to the CALL.
+     */
+    void compileKeywordArgs(Call call, int target, int fn) {
+        List<Node> actuals = new ArrayList<>(call.args.keywords.values());
+        Symbol[] keys = call.args.keywords.keySet().toArray(new Symbol[actuals.size()]);
+        KeywordArgs args = new KeywordArgs(keys);
+        int keywords = info(keys);
+
+        int counter = allocTemp();
+        emit(call, Op.LOADNIL, counter);
+        // all the registers are taken first, because the temporaries of
+        // one argument must not overwrite arguments evaluated before it
+        int start = nlocals + tempTop;
+        for (int i = 0; i < actuals.size(); i++) {
+            allocTemp();
+        }
+        int next = emit(call, Op.NEXTARG, counter, fn, info(args));
+        for (int i = 0; i < actuals.size(); i++) {
+            args.starts[i] = code.size();
+            compile(actuals.get(i), start + i);
+            emit(call, Op.JUMP, next);
+        }
+        args.end = code.size();
+        emit(call, Op.CALL, target, fn, start, actuals.size(), keywords);
+    }
+
+
+    void compileFunValue(Fun fun, int dst) {
+        Compiler c = new Compiler(scope, frame + 1);
+        Code fc = c.compileFun(fun);
+        functions.add(fc);
+
+        int mark = tempTop;
+        int start = nlocals + tempTop;
+        if (fun.propertyForm != null && fun.constantProperties == null) {
+            fc.properties = compileProperties(fun.propertyForm);
+        }
+        if (dst >= 0) {
+            emit(fun, Op.CLOSURE, dst, functions.size() - 1, start);
+        }
+        tempTop = mark;
+    }
+
+
+    /**
+     * Evaluate every property of a property form into consecutive temps
+     */
+    PropertyKeys compileProperties(Scope propertyForm) {
+        List<String> fields = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (String field : propertyForm.keySet()) {
+            for (Map.Entry<String, Object> e : propertyForm.lookupAllProps(field).entrySet()) {
+                fields.add(field);
+                keys.add(e.getKey());
+                compile((Node) e.getValue(), allocTemp());
+            }
+        }
+        return new PropertyKeys(fields, keys);
+    }
+
+
+    void compileRecordDef(RecordDef def, int dst) {
+        int mark = tempTop;
+        int target = dst >= 0 ? dst : allocTemp();
+        int start = nlocals + tempTop;
+        PropertyKeys keys = compileProperties(def.propertyForm);
+        int nparents = 0;
+        if (def.parents != null) {
+            for (Name parent : def.parents) {
+                compile(parent, allocTemp());
+            }
+            nparents = def.parents.size();
+        }
+        emit(def, Op.RECORDDEF, target, scope.base + def.name.slot,
+                info(new RecordInfo(def.name.id, def, keys, nparents)), start);
+        tempTop = mark;
+    }
+
+
+    void compileRecordLiteral(RecordLiteral record, int dst) {
+        int mark = tempTop;
+        int target = dst >= 0 ? dst : allocTemp();
+        int start = nlocals + tempTop;
+        for (Node value : record.map.values()) {
+            compile(value, allocTemp());
+        }
+        emit(record, Op.RECORD, target, info(record.map.keySet().toArray(new String[record.map.size()])), start);
+        tempTop = mark;
+    }
+
+
+    void compileVectorLiteral(VectorLiteral vector, int dst) {
+        int mark = tempTop;
+        int target = dst >= 0 ? dst : allocTemp();
+        int start = nlocals + tempTop;
+        for (Node element : vector.elements) {
+            compile(element, allocTemp());
+        }
+        emit(vector, Op.VECTOR, target, start, vector.elements.size());
+        tempTop = mark;
+    }
+
+
+    void compileSubscript(Subscript subscript, int dst) {
+        int mark = tempTop;
+        int target = dst >= 0 ? dst : allocTemp();
+        int vector = allocTemp();
+        compile(subscript.value, vector);
+        int index = allocTemp();
+        compile(subscript.index, index);
+        emit(subscript, Op.GETSUB, target, vector, index);
+        tempTop = mark;
+    }
+
+
+    void compileAttr(Attr attr, int dst) {
+        int mark = tempTop;
+        int target = dst >= 0 ? dst : allocTemp();
+        int record = allocTemp();
+        compile(attr.value, record);
+        emit(attr.attr, Op.GETATTR, target, record, info(attr));
+        tempTop = mark;
+    }
+
+
+    void loadConstant(Value v, int dst) {
+        if (dst >= 0) {
+            emit(null, Op.LOADK, dst, constant(v));
+        }
+    }
+
+
+    int emit(Node source, int op, int... operands) {
+        int pc = code.size();
+        code.add(op);
+        sources.add(source);
+        for (int operand : operands) {
+            code.add(operand);
+            sources.add(null);
+        }
+        return pc;
+    }
+
+
+    int constant(Value v) {
+        constants.add(v);
+        return constants.size() - 1;
+    }
+
+
+    int info(Object o) {
+        infos.add(o);
+        return infos.size() - 1;
+    }
+
+
+    int allocTemp() {
+        int reg = nlocals + tempTop;
+        tempTop++;
+        if (tempTop > maxTemps) {
+            maxTemps = tempTop;
+        }
+        return reg;
+    }
+
+
+    /**
+     * Number of slots of all blocks in node that belong to the same Code
+     */
+    static int countLocals(Node node) {
+        if (node instanceof Block) {
+            int n = ((Block) node).frameSize;
+            for (Node s : ((Block) node).statements) {
+                n += countLocals(s);
+            }
+            return n;
+        } else if (node instanceof If) {
+            return countLocals(((If) node).test) + countLocals(((If) node).then) + countLocals(((If) node).orelse);
+        } else if (node instanceof Def) {
+            return countLocals(((Def) node).value);
+        } else if (node instanceof Assign) {
+            return countLocals(((Assign) node).value) + countLocals(((Assign) node).pattern);
+        } else if (node instanceof Call) {
+            Call call = (Call) node;
+            int n = countLocals(call.op);
+            for (Node a : call.args.positional) {
+                n += countLocals(a);
+            }
+            for (Node a : call.args.keywords.values()) {
+                n += countLocals(a);
+            }
+            return n;
+        } else if (node instanceof Fun) {
+            // the body is a separate Code, but properties are evaluated here
+            return ((Fun) node).propertyForm == null ? 0 : countPropertyLocals(((Fun) node).propertyForm);
+        } else if (node instanceof RecordDef) {
+            return countPropertyLocals(((RecordDef) node).propertyForm);
+        } else if (node instanceof RecordLiteral) {
+            int n = 0;
+            for (Node v : ((RecordLiteral) node).map.values()) {
+                n += countLocals(v);
+            }
+            return n;
+        } else if (node instanceof VectorLiteral) {
+            int n = 0;
+            for (Node v : ((VectorLiteral) node).elements) {
+                n += countLocals(v);
+            }
+            return n;
+        } else if (node instanceof Subscript) {
+            return countLocals(((Subscript) node).value) + countLocals(((Subscript) node).index);
+        } else if (node instanceof Attr) {
+            return countLocals(((Attr) node).value);
+        } else {
+            return 0;
+        }
+    }
+
+
+    static int countPropertyLocals(Scope propertyForm) {
+        int n = 0;
+        for (String field : propertyForm.keySet()) {
+            for (Object v : propertyForm.lookupAllProps(field).values()) {
+                n += countLocals((Node) v);
+            }
+        }
+        return n;
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.yinwang.yin.vm;
+
+
+import org.yinwang.yin.Symbol;
+import org.yinwang.yin.value.Value;
+
+import java.util.Arrays;
+
+
+/**
+ * Operand of NEXTARG: the keywords of a call and where the code of each
+ * argument starts. Arguments to a closure are evaluated in the order of
+ * its parameters, as in the interpreter, so the order is only known when
+ * the callee is. The order for the last callee is kept.
+ */
+public class KeywordArgs {
+
+    public Symbol[] keys;
+    public int[] starts;        // code evaluating each argument, which jumps back to NEXTARG
+    public int end;             // code after the last argument
+
+    Code lastCode;
+    int[] lastOrder;
+
+
+    public KeywordArgs(Symbol[] keys) {
+        this.keys = keys;
+        this.starts = new int[keys.length];
+    }
+
+
+    /**
+     * Indexes of the arguments to evaluate for callee, in order. A closure
+     * gets the arguments which name one of its parameters, in the order of
+     * the parameters, anything else gets all of them in call order.
+     */
+    int[] order(Value callee) {
+        if (!(callee instanceof VMClosure)) {
+            if (lastCode != null || lastOrder == null) {
+                lastCode = null;
+                lastOrder = new int[keys.length];
+                for (int i = 0; i < keys.length; i++) {
+                    lastOrder[i] = i;
+                }
+            }
+            return lastOrder;
+        }
+
+        Code code = ((VMClosure) callee).code;
+        if (code != lastCode || lastOrder == null) {
+            int[] order = new int[keys.length];
+            int n = 0;
+            for (int p = 0; p < code.fun.params.size(); p++) {
+                Symbol id = code.fun.params.get(p).symbol;
+                for (int i = 0; i < keys.length; i++) {
+                    if (keys[i] == id) {
+                        order[n++] = i;
+                        break;
+                    }
+                }
+            }
+            lastOrder = Arrays.copyOf(order, n);
+            lastCode = code;
+        }
+        return lastOrder;
+    }
+
+}
@@ -0,0 +1,49 @@
+package org.yinwang.yin.vm;
+
+
+/**
+ * Opcodes of the register VM. An instruction is its opcode followed by a
+ * fixed number of int operands, listed in the comments.
+ */
+public class Op {
+
+    public static final int LOADK = 0;        // dst, constant
+    public static final int LOADNIL = 1;      // dst
+    public static final int MOVE = 2;         // dst, src
+    public static final int GETUP = 3;        // dst, level, reg
+    public static final int SETLOCAL = 4;     // reg, src
+    public static final int SETUP = 5;        // level, reg, src
+    public static final int DEFINE = 6;       // reg, src
+    public static final int DEFPAT = 7;       // src, pattern
+    public static final int SETPAT = 8;       // src, pattern
+    public static final int JUMP = 9;         // target
+    public static final int JUMPF = 10;       // test, target
+    public static final int CALL = 11;        // dst, fn, args, nargs, keywords
+    public static final int RETURN = 12;      // src
+    public static final int CLOSURE = 13;     // dst, function, properties
+    public static final int VECTOR = 14;      // dst, start, n
+    public static final int RECORD = 15;      // dst, keys, start
+    public static final int RECORDDEF = 16;   // dst, reg, definition, start
+    public static final int GETSUB = 17;      // dst, vector, index
+    public static final int SETSUB = 18;      // vector, index, src
+    public static final int GETATTR = 19;     // dst, record, attr
+    public static final int SETATTR = 20;     // record, attr, src
+    public static final int FAIL = 21;        // message
+    public static final int NEXTARG = 22;     // counter, fn, keyword args
+
+
+    public static final String[] NAMES = {
+            "LOADK", "LOADNIL", "MOVE", "GETUP", "SETLOCAL", "SETUP", "DEFINE", "DEFPAT", "SETPAT",
+            "JUMP", "JUMPF", "CALL", "RETURN", "CLOSURE", "VECTOR", "RECORD", "RECORDDEF",
+            "GETSUB", "SETSUB", "GETATTR", "SETATTR", "FAIL", "NEXTARG"
+    };
+
+
+    // number of operands of each opcode
+    public static final int[] OPERANDS = {
+            2, 1, 2, 3, 2, 3, 2, 2, 2,
+            1, 2, 5, 1, 3, 3, 3, 4,
+            3, 3, 3, 3, 1, 3
+    };
+
+}
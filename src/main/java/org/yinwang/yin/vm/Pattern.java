@@ -0,0 +1,35 @@
+package org.yinwang.yin.vm;
+
+
+import org.yinwang.yin.ast.Node;
+
+
+/**
+ * Compiled destructuring pattern of define or set!
+ */
+public class Pattern {
+
+    public static final int NAME = 0;
+    public static final int VECTOR = 1;
+    public static final int RECORD = 2;
+    public static final int UNSUPPORTED = 3;
+
+    public int kind;
+    public Node node;
+
+    // NAME
+    public String id;
+    public int level;
+    public int reg;
+
+    // VECTOR and RECORD
+    public String[] keys;
+    public Pattern[] elements;
+
+
+    public Pattern(int kind, Node node) {
+        this.kind = kind;
+        this.node = node;
+    }
+
+}
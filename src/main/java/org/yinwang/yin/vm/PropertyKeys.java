@@ -0,0 +1,39 @@
+package org.yinwang.yin.vm;
+
+
+import org.yinwang.yin.Scope;
+import org.yinwang.yin.value.Value;
+
+import java.util.List;
+
+
+/**
+ * (field, key) of every property in a property form, in evaluation order.
+ * The evaluated values are kept in consecutive registers.
+ */
+public class PropertyKeys {
+
+    public String[] fields;
+    public String[] keys;
+
+
+    public PropertyKeys(List<String> fields, List<String> keys) {
+        this.fields = fields.toArray(new String[fields.size()]);
+        this.keys = keys.toArray(new String[keys.size()]);
+    }
+
+
+    public int size() {
+        return fields.length;
+    }
+
+
+    public Scope build(Value[] regs, int start) {
+        Scope properties = new Scope();
+        for (int i = 0; i < fields.length; i++) {
+            properties.put(fields[i], keys[i], regs[start + i]);
+        }
+        return properties;
+    }
+
+}
@@ -0,0 +1,26 @@
+package org.yinwang.yin.vm;
+
+
+import org.yinwang.yin.ast.RecordDef;
+
+
+/**
+ * Operand of RECORDDEF. The evaluated properties are followed by the
+ * parents in consecutive registers.
+ */
+public class RecordInfo {
+
+    public String name;
+    public RecordDef definition;
+    public PropertyKeys properties;
+    public int nparents;
+
+
+    public RecordInfo(String name, RecordDef definition, PropertyKeys properties, int nparents) {
+        this.name = name;
+        this.definition = definition;
+        this.properties = properties;
+        this.nparents = nparents;
+    }
+
+}
@@ -0,0 +1,449 @@
+package org.yinwang.yin.vm;
+
+
+import org.yinwang.yin.Scope;
+import org.yinwang.yin.Symbol;
+import org.yinwang.yin.Util;
+import org.yinwang.yin.ast.Attr;
+import org.yinwang.yin.ast.Call;
+import org.yinwang.yin.ast.Def;
+import org.yinwang.yin.ast.Node;
+import org.yinwang.yin.value.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+
+/**
+ * Run register code. Calls between compiled functions don't recurse on
+ * the Java stack, the frames are chained through VMFrame.caller.
+ */
+public class VM {
+
+    public static Value run(Code main, VMFrame root) {
+        VMFrame frame = new VMFrame(main, root);
+        Code code = main;
+        int[] ins = code.code;
+        Value[] regs = frame.regs;
+        int pc = 0;
+
+        while (true) {
+            switch (ins[pc]) {
+                case Op.LOADK:
+                    regs[ins[pc + 1]] = code.constants[ins[pc + 2]];
+                    pc += 3;
+                    break;
+
+                case Op.LOADNIL:
+                    regs[ins[pc + 1]] = null;
+                    pc += 2;
+                    break;
+
+                case Op.MOVE:
+                    regs[ins[pc + 1]] = regs[ins[pc + 2]];
+                    pc += 3;
+                    break;
+
+                case Op.GETUP:
+                    regs[ins[pc + 1]] = frame.getAncestor(ins[pc + 2]).regs[ins[pc + 3]];
+                    pc += 4;
+                    break;
+
+                case Op.SETLOCAL:
+                    if (regs[ins[pc + 1]] == null) {
+                        Util.abort(code.sources[pc], "assigned name was not defined: " + code.sources[pc]);
+                    }
+                    regs[ins[pc + 1]] = regs[ins[pc + 2]];
+                    pc += 3;
+                    break;
+
+                case Op.SETUP: {
+                    Value[] target = frame.getAncestor(ins[pc + 1]).regs;
+                    if (target[ins[pc + 2]] == null) {
+                        Util.abort(code.sources[pc], "assigned name was not defined: " + code.sources[pc]);
+                    }
+                    target[ins[pc + 2]] = regs[ins[pc + 3]];
+                    pc += 4;
+                    break;
+                }
+
+                case Op.DEFINE:
+                    if (regs[ins[pc + 1]] != null) {
+                        Node pattern = ((Def) code.sources[pc]).pattern;
+                        Util.abort(pattern, "trying to redefine name: " + pattern);
+                    }
+                    regs[ins[pc + 1]] = regs[ins[pc + 2]];
+                    pc += 3;
+                    break;
+
+                case Op.DEFPAT:
+                    define((Pattern) code.infos[ins[pc + 2]], regs[ins[pc + 1]], frame);
+                    pc += 3;
+                    break;
+
+                case Op.SETPAT:
+                    assign((Pattern) code.infos[ins[pc + 2]], regs[ins[pc + 1]], frame);
+                    pc += 3;
+                    break;
+
+                case Op.JUMP:
+                    pc = ins[pc + 1];
+                    break;
+
+                case Op.NEXTARG: {
+                    KeywordArgs args = (KeywordArgs) code.infos[ins[pc + 3]];
+                    int[] order = args.order(regs[ins[pc + 2]]);
+                    Value counter = regs[ins[pc + 1]];
+                    int n = counter == null ? 0 : (int) ((IntValue) counter).value;
+                    if (n < order.length) {
+                        regs[ins[pc + 1]] = IntValue.of(n + 1);
+                        pc = args.starts[order[n]];
+                    } else {
+                        pc = args.end;
+                    }
+                    break;
+                }
+
+                case Op.JUMPF: {
+                    Value test = regs[ins[pc + 1]];
+                    if (((BoolValue) test).value) {
+                        pc += 3;
+                    } else {
+                        pc = ins[pc + 2];
+                    }
+                    break;
+                }
+
+                case Op.CALL: {
+                    Node location = code.sources[pc];
+                    int dst = ins[pc + 1];
+                    Value callee = regs[ins[pc + 2]];
+                    int start = ins[pc + 3];
+                    int nargs = ins[pc + 4];
+                    int keywords = ins[pc + 5];
+                    pc += 6;
+
+                    if (callee instanceof VMClosure) {
+                        VMClosure closure = (VMClosure) callee;
+                        VMFrame callFrame = new VMFrame(closure.code, closure.env);
+                        bind(closure, callFrame, regs, start, nargs,
+                                keywords < 0 ? null : (Symbol[]) code.infos[keywords], location);
+
+                        // a tail call returns to our caller, so the current frame can be dropped
+                        int next = pc;
+                        while (ins[next] == Op.JUMP) {
+                            next = ins[next + 1];
+                        }
+                        if (ins[next] == Op.RETURN && ins[next + 1] == dst) {
+                            callFrame.caller = frame.caller;
+                            callFrame.returnReg = frame.returnReg;
+                            frame.caller = null;
+                        } else {
+                            frame.pc = pc;
+                            callFrame.caller = frame;
+                            callFrame.returnReg = dst;
+                        }
+
+                        frame = callFrame;
+                        code = closure.code;
+                        ins = code.code;
+                        regs = frame.regs;
+                        pc = 0;
+                    } else if (callee instanceof RecordType) {
+                        RecordType template = (RecordType) callee;
+                        RecordValue record = template.instantiate();
+
+                        // keyword arguments overwrite the defaults
+                        if (keywords >= 0) {
+                            Symbol[] keys = (Symbol[]) code.infos[keywords];
+                            for (int i = 0; i < keys.length; i++) {
+                                int index = template.indexOf(keys[i]);
+                                if (index < 0) {
+                                    Util.abort(location, "extra keyword argument: " + keys[i]);
+                                }
+                                record.values[index] = regs[start + i];
+                            }
+                        }
+                        regs[dst] = record;
+                    } else if (callee instanceof PrimFun) {
+                        if (keywords >= 0) {
+                            // primitives only take positional arguments
+                            Util.abort(location, "calling primitive with keyword arguments: " + location);
+                        }
+                        PrimFun prim = (PrimFun) callee;
+                        if (nargs == 1) {
+                            regs[dst] = prim.apply1(regs[start], location);
+                        } else if (nargs == 2) {
+                            regs[dst] = prim.apply2(regs[start], regs[start + 1], location);
+                        } else {
+                            List<Value> args = new ArrayList<>(Arrays.asList(regs).subList(start, start + nargs));
+                            regs[dst] = prim.apply(args, location);
+                        }
+                    } else {
+                        Util.abort(((Call) location).op, "calling non-function: " + callee);
+                    }
+                    break;
+                }
+
+                case Op.RETURN: {
+                    Value result = regs[ins[pc + 1]];
+                    VMFrame caller = frame.caller;
+                    if (caller == null) {
+                        return result;
+                    }
+                    caller.regs[frame.returnReg] = result;
+                    frame.caller = null;
+
+                    frame = caller;
+                    code = frame.code;
+                    ins = code.code;
+                    regs = frame.regs;
+                    pc = frame.pc;
+                    break;
+                }
+
+                case Op.CLOSURE: {
+                    Code function = code.functions[ins[pc + 2]];
+                    Scope properties = function.fun.constantProperties;
+                    if (function.properties != null) {
+                        properties = function.properties.build(regs, ins[pc + 3]);
+                    }
+                    regs[ins[pc + 1]] = new VMClosure(function, properties, frame);
+                    pc += 4;
+                    break;
+                }
+
+                case Op.VECTOR: {
+                    int start = ins[pc + 2];
+                    List<Value> values = new ArrayList<>(Arrays.asList(regs).subList(start, start + ins[pc + 3]));
+                    regs[ins[pc + 1]] = new Vector(values);
+                    pc += 4;
+                    break;
+                }
+
+                case Op.RECORD: {
+                    String[] keys = (String[]) code.infos[ins[pc + 2]];
+                    int start = ins[pc + 3];
+                    Scope properties = new Scope();
+                    for (int i = 0; i < keys.length; i++) {
+                        properties.putValue(keys[i], regs[start + i]);
+                    }
+                    regs[ins[pc + 1]] = new RecordType(null, code.sources[pc], properties);
+                    pc += 4;
+                    break;
+                }
+
+                case Op.RECORDDEF: {
+                    RecordInfo info = (RecordInfo) code.infos[ins[pc + 3]];
+                    int start = ins[pc + 4];
+                    Scope properties = info.properties.build(regs, start);
+                    for (int i = 0; i < info.nparents; i++) {
+                        Value parent = regs[start + info.properties.size() + i];
+                        properties.putAll(((RecordType) parent).properties);
+                    }
+                    Value r = new RecordType(info.name, info.definition, properties);
+                    regs[ins[pc + 2]] = r;
+                    regs[ins[pc + 1]] = r;
+                    pc += 5;
+                    break;
+                }
+
+                case Op.GETSUB:
+                    regs[ins[pc + 1]] = subscript(regs[ins[pc + 2]], regs[ins[pc + 3]], code.sources[pc]);
+                    pc += 4;
+                    break;
+
+                case Op.SETSUB: {
+                    Vector vector = checkVector(regs[ins[pc + 1]], regs[ins[pc + 2]], code.sources[pc]);
+                    long i = ((IntValue) regs[ins[pc + 2]]).value;
+                    if (i >= 0 && i < vector.size()) {
+                        vector.set((int) i, regs[ins[pc + 3]]);
+                    } else {
+                        Util.abort(code.sources[pc], "subscript out of bound: " + i + " v.s. [0, " + (vector.size() - 1) + "]");
+                    }
+                    pc += 4;
+                    break;
+                }
+
+                case Op.GETATTR:
+                    regs[ins[pc + 1]] = ((Attr) code.infos[ins[pc + 3]]).get(regs[ins[pc + 2]]);
+                    pc += 4;
+                    break;
+
+                case Op.SETATTR:
+                    ((Attr) code.infos[ins[pc + 2]]).put(regs[ins[pc + 1]], regs[ins[pc + 3]]);
+                    pc += 4;
+                    break;
+
+                case Op.FAIL:
+                    Util.abort(code.sources[pc], ((StringValue) code.constants[ins[pc + 1]]).value);
+                    return null;
+
+                default:
+                    Util.abort("illegal opcode " + ins[pc] + " at " + pc + ", compiler bug");
+                    return null;
+            }
+        }
+    }
+
+
+    /**
+     * Bind the arguments in regs[start, start + nargs) to the parameters of
+     * closure, then fill in defaults for the parameters not supplied.
+     */
+    static void bind(VMClosure closure, VMFrame callFrame, Value[] regs, int start, int nargs,
+                     Symbol[] keywords, Node location)
+    {
+        Code callee = closure.code;
+        int[] paramRegs = callee.paramRegs;
+
+        if (keywords == null) {
+            if (nargs > paramRegs.length) {
+                Util.abort(location, "calling function with too many arguments. expected: " + paramRegs.length
+                        + " actual: " + nargs);
+            }
+            for (int i = 0; i < nargs; i++) {
+                callFrame.regs[paramRegs[i]] = regs[start + i];
+            }
+        } else {
+            for (int i = 0; i < nargs; i++) {
+                int index = callee.paramIndex(keywords[i]);
+                if (index >= 0) {
+                    callFrame.regs[paramRegs[index]] = regs[start + i];
+                }
+            }
+        }
+
+        // set default values for parameters not supplied
+        if (closure.properties != null && (keywords != null || nargs < paramRegs.length)) {
+            for (int i = 0; i < paramRegs.length; i++) {
+                if (callFrame.regs[paramRegs[i]] != null) {
+                    continue;
+                }
+                Object defaultValue = closure.properties.lookupPropertyLocal(callee.fun.params.get(i).id, "default");
+                if (defaultValue instanceof Value) {
+                    callFrame.regs[paramRegs[i]] = (Value) defaultValue;
+                }
+            }
+        }
+    }
+
+
+    static Value subscript(Value vector, Value indexValue, Node location) {
+        Vector values = checkVector(vector, indexValue, location);
+        long i = ((IntValue) indexValue).value;
+
+        if (i >= 0 && i < values.size()) {
+            return values.get((int) i);
+        } else {
+            Util.abort(location, "subscript out of bound: " + i + " v.s. [0, " + (values.size() - 1) + "]");
+            return null;
+        }
+    }
+
+
+    static Vector checkVector(Value vector, Value indexValue, Node location) {
+        if (!(vector instanceof Vector)) {
+            Util.abort(location, "subscripting non-vector: " + vector);
+        }
+        if (!(indexValue instanceof IntValue)) {
+            Util.abort(location, "subscript is not an integer: " + indexValue);
+        }
+        return (Vector) vector;
+    }
+
+
+    static void define(Pattern pattern, Value value, VMFrame frame) {
+        switch (pattern.kind) {
+            case Pattern.NAME: {
+                Value[] regs = frame.getAncestor(pattern.level).regs;
+                if (regs[pattern.reg] != null) {
+                    Util.abort(pattern.node, "trying to redefine name: " + pattern.id);
+                }
+                regs[pattern.reg] = value;
+                break;
+            }
+            case Pattern.RECORD:
+                if (value instanceof RecordType) {
+                    Scope elms2 = ((RecordType) value).properties;
+                    if (new HashSet<>(Arrays.asList(pattern.keys)).equals(elms2.keySet())) {
+                        for (int i = 0; i < pattern.keys.length; i++) {
+                            define(pattern.elements[i], elms2.lookupLocal(pattern.keys[i]), frame);
+                        }
+                    } else {
+                        Util.abort(pattern.node, "define with records of different attributes: " +
+                                Arrays.asList(pattern.keys) + " v.s. " + elms2.keySet());
+                    }
+                } else {
+                    Util.abort(pattern.node, "define with incompatible types: record and " + value);
+                }
+                break;
+            case Pattern.VECTOR:
+                if (value instanceof Vector) {
+                    Vector elms2 = (Vector) value;
+                    if (pattern.elements.length == elms2.size()) {
+                        for (int i = 0; i < pattern.elements.length; i++) {
+                            define(pattern.elements[i], elms2.get(i), frame);
+                        }
+                    } else {
+                        Util.abort(pattern.node,
+                                "define with vectors of different sizes: " + pattern.elements.length + " v.s. " + elms2.size());
+                    }
+                } else {
+                    Util.abort(pattern.node, "define with incompatible types: vector and " + value);
+                }
+                break;
+            default:
+                Util.abort(pattern.node, "unsupported pattern of define: " + pattern.node);
+        }
+    }
+
+
+    static void assign(Pattern pattern, Value value, VMFrame frame) {
+        switch (pattern.kind) {
+            case Pattern.NAME: {
+                Value[] regs = frame.getAncestor(pattern.level).regs;
+                if (regs[pattern.reg] == null) {
+                    Util.abort(pattern.node, "assigned name was not defined: " + pattern.id);
+                }
+                regs[pattern.reg] = value;
+                break;
+            }
+            case Pattern.RECORD:
+                if (value instanceof RecordType) {
+                    Scope elms2 = ((RecordType) value).properties;
+                    if (new HashSet<>(Arrays.asList(pattern.keys)).equals(elms2.keySet())) {
+                        for (int i = 0; i < pattern.keys.length; i++) {
+                            assign(pattern.elements[i], elms2.lookupLocal(pattern.keys[i]), frame);
+                        }
+                    } else {
+                        Util.abort(pattern.node, "assign with records of different attributes: " +
+                                Arrays.asList(pattern.keys) + " v.s. " + elms2.keySet());
+                    }
+                } else {
+                    Util.abort(pattern.node, "assign with incompatible types: record and " + value);
+                }
+                break;
+            case Pattern.VECTOR:
+                if (value instanceof Vector) {
+                    Vector elms2 = (Vector) value;
+                    if (pattern.elements.length == elms2.size()) {
+                        for (int i = 0; i < pattern.elements.length; i++) {
+                            assign(pattern.elements[i], elms2.get(i), frame);
+                        }
+                    } else {
+                        Util.abort(pattern.node,
+                                "assign vectors of different sizes: " + pattern.elements.length + " v.s. " + elms2.size());
+                    }
+                } else {
+                    Util.abort(pattern.node, "assign incompatible types: vector and " + value);
+                }
+                break;
+            default:
+                Util.abort(pattern.node, "unsupported pattern of assign: " + pattern.node);
+        }
+    }
+
+}
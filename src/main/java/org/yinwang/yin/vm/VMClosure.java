@@ -0,0 +1,26 @@
+package org.yinwang.yin.vm;
+
+
+import org.yinwang.yin.Scope;
+import org.yinwang.yin.value.Value;
+
+
+public class VMClosure extends Value {
+
+    public Code code;
+    public Scope properties;
+    public VMFrame env;
+
+
+    public VMClosure(Code code, Scope properties, VMFrame env) {
+        this.code = code;
+        this.properties = properties;
+        this.env = env;
+    }
+
+
+    public String toString() {
+        return code.fun.toString();
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.yinwang.yin.vm;
+
+
+import org.yinwang.yin.Scope;
+import org.yinwang.yin.value.Value;
+
+
+/**
+ * Activation of a Code. env is the frame the closure was created in, and
+ * caller is the frame to return to.
+ */
+public class VMFrame {
+
+    public Code code;
+    public Value[] regs;
+    public VMFrame env;
+    public VMFrame caller;
+    public int pc;
+    public int returnReg;
+
+
+    public VMFrame(Code code, VMFrame env) {
+        this.code = code;
+        this.regs = new Value[code.nregs];
+        this.env = env;
+    }
+
+
+    /**
+     * Frame of builtins, with the same layout as LexicalScope(Scope)
+     */
+    public VMFrame(Scope scope) {
+        this.regs = new Value[scope.keySet().size()];
+        int i = 0;
+        for (String name : scope.keySet()) {
+            regs[i++] = scope.lookupLocal(name);
+        }
+    }
+
+
+    /**
+     * Frame of the closure level levels out
+     */
+    public VMFrame getAncestor(int level) {
+        VMFrame f = this;
+        for (int i = 0; i < level; i++) {
+            f = f.env;
+        }
+        return f;
+    }
+
+}
@@ -0,0 +1,95 @@
+package org.yinwang.yin.parser;
+
+
+import org.yinwang.yin.Util;
+import org.yinwang.yin.ast.Node;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+
+/**
+ * Parse time and peak memory of parsing one file, with the text read into
+ * a String ("string") or memory-mapped ("mapped"). With "lex" the file is
+ * only split into tokens, which are dropped, so that the memory is mostly
+ * that of the text.
+ *
+ * usage: ParseBenchmark file.yin string|mapped [lex]
+ *
+ * It is a tool, not a test, and is built with the tests:
+ *
+ *     java -cp target/classes:target/test-classes org.yinwang.yin.parser.ParseBenchmark ...
+ *
+ * Peak RSS only grows in a process, so run each mode in a fresh JVM, with
+ * the same -Xmx for both.
+ */
+public class ParseBenchmark {
+
+    public static void main(String[] args) throws IOException, ParserException {
+        if (args.length < 2 || !(args[1].equals("string") || args[1].equals("mapped"))
+                || (args.length == 3 && !args[2].equals("lex")) || args.length > 3)
+        {
+            Util.abort("usage: ParseBenchmark file.yin string|mapped [lex]");
+        }
+        String file = args[0];
+        boolean mapped = args[1].equals("mapped");
+        boolean lexOnly = args.length == 3;
+
+        long t0 = System.nanoTime();
+        CharSequence text = mapped ? new MappedSource(file) : Util.readFile(file);
+        Node tree = null;
+        int tokens = 0;
+        if (lexOnly) {
+            Lexer lexer = new Lexer(file, text);
+            while (lexer.nextToken() != null) {
+                tokens++;
+            }
+        } else {
+            tree = Parser.parseNode(new PreParser(file, text).parse());
+        }
+        long t1 = System.nanoTime();
+
+        Util.msg("file: " + file + " (" + Files.size(Paths.get(file)) / 1024 + " KB)");
+        Util.msg("mode: " + args[1] + (lexOnly ? ", lex only (" + tokens + " tokens)" : ""));
+        Util.msg((lexOnly ? "lex" : "parse") + " time: " + (t1 - t0) / 1000000 + " ms");
+        Util.msg("peak heap: " + peakHeap() / 1024 + " KB");
+        Util.msg("peak RSS: " + peakRss() + " KB");
+
+        // keep the tree alive until memory is measured
+        if (tree == null && !lexOnly) {
+            Util.msg("empty file");
+        }
+    }
+
+
+    // sum of the peak usage of the heap pools
+    static long peakHeap() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+
+    // VmHWM of /proc/self/status in KB, or -1 where there is none
+    static long peakRss() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException e) {
+            // not Linux
+        }
+        return -1;
+    }
+
+}